@@ -0,0 +1,60 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.configs;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.concurrent.TimeUnit;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPoolConfig;
+import redis.clients.jedis.Protocol;
+
+/**
+ * {@link JedisPool} exporting how long borrowing a connection takes.
+ *   - qeats.redis.pool.borrow: time spent in {@link #getResource()}, with a histogram. Long
+ *     borrows mean the pool is too small for the load, rather than Redis being slow.
+ *   - qeats.redis.pool.active, qeats.redis.pool.idle and qeats.redis.pool.waiting: connections
+ *     in use, idle connections and threads waiting for one.
+ */
+public class InstrumentedJedisPool extends JedisPool {
+
+  private final Timer borrowTimer;
+
+  public InstrumentedJedisPool(JedisPoolConfig poolConfig, String host, int port,
+      int connectionTimeoutInMillis, int socketTimeoutInMillis, MeterRegistry meterRegistry) {
+    super(poolConfig, host, port, connectionTimeoutInMillis, socketTimeoutInMillis, null,
+        Protocol.DEFAULT_DATABASE, null, false, null, null, null);
+
+    borrowTimer = Timer.builder("qeats.redis.pool.borrow")
+        .description("Time taken to borrow a Redis connection from the pool")
+        .publishPercentileHistogram()
+        .register(meterRegistry);
+    Gauge.builder("qeats.redis.pool.active", this, JedisPool::getNumActive)
+        .description("Redis connections in use")
+        .register(meterRegistry);
+    Gauge.builder("qeats.redis.pool.idle", this, JedisPool::getNumIdle)
+        .description("Idle Redis connections")
+        .register(meterRegistry);
+    Gauge.builder("qeats.redis.pool.waiting", this, JedisPool::getNumWaiters)
+        .description("Threads waiting for a Redis connection")
+        .register(meterRegistry);
+  }
+
+  @Override
+  public Jedis getResource() {
+    long startTimeInNanos = System.nanoTime();
+    try {
+      return super.getResource();
+    } finally {
+      borrowTimer.record(System.nanoTime() - startTimeInNanos,
+          TimeUnit.NANOSECONDS);
+    }
+  }
+
+}
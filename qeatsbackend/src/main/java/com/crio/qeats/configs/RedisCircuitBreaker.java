@@ -0,0 +1,113 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.configs;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.function.Supplier;
+import javax.annotation.PostConstruct;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Stops calling Redis while it is failing, so that requests go straight to the fallback
+ * instead of each waiting for a socket timeout.
+ *   - CLOSED: calls go through, qeats.cache.breaker.failure-threshold consecutive failures
+ *     open the breaker.
+ *   - OPEN: calls are rejected for qeats.cache.breaker.open-ms.
+ *   - HALF_OPEN: a single call probes Redis and closes or reopens the breaker. Another probe is
+ *     let through if it has not reported back within qeats.cache.breaker.open-ms.
+ * Exported as the qeats.cache.breaker.state gauge (the ordinal of {@link State}), along with
+ * the qeats.cache.fallback timer.
+ */
+@Component
+@Log4j2
+public class RedisCircuitBreaker {
+
+  public enum State {
+    CLOSED, HALF_OPEN, OPEN
+  }
+
+  @Value("${qeats.cache.breaker.failure-threshold:5}")
+  private int failureThreshold;
+
+  @Value("${qeats.cache.breaker.open-ms:10000}")
+  private long openInMillis;
+
+  @Autowired
+  private MeterRegistry meterRegistry;
+
+  private volatile State state = State.CLOSED;
+  private int consecutiveFailures;
+  // When the breaker opened, or when the last probe was let through.
+  private long openedAtMillis;
+
+  private Timer fallbackTimer;
+
+  @PostConstruct
+  public void registerMetrics() {
+    Gauge.builder("qeats.cache.breaker.state", this, breaker -> breaker.getState().ordinal())
+        .description("Redis circuit breaker, 0 closed, 1 half-open, 2 open")
+        .register(meterRegistry);
+    fallbackTimer = Timer.builder("qeats.cache.fallback")
+        .description("Lookups served without Redis")
+        .register(meterRegistry);
+  }
+
+  public State getState() {
+    return state;
+  }
+
+  /**
+   * Whether Redis should be called now. Callers which get true must report the outcome with
+   * {@link #recordSuccess()} or {@link #recordFailure()}.
+   */
+  public boolean allowRequest() {
+    if (state == State.CLOSED) {
+      return true;
+    }
+    synchronized (this) {
+      long now = System.currentTimeMillis();
+      if (state != State.CLOSED && now - openedAtMillis >= openInMillis) {
+        state = State.HALF_OPEN;
+        openedAtMillis = now;
+        return true;
+      }
+      return state == State.CLOSED;
+    }
+  }
+
+  public synchronized void recordSuccess() {
+    consecutiveFailures = 0;
+    if (state != State.CLOSED) {
+      log.info("Redis is back, closing the circuit breaker");
+      state = State.CLOSED;
+    }
+  }
+
+  public synchronized void recordFailure() {
+    consecutiveFailures++;
+    if (state == State.HALF_OPEN
+        || (state == State.CLOSED && consecutiveFailures >= failureThreshold)) {
+      log.warn("Redis failed {} times in a row, bypassing it for {}ms", consecutiveFailures,
+          openInMillis);
+      state = State.OPEN;
+      openedAtMillis = System.currentTimeMillis();
+    }
+  }
+
+  /**
+   * Runs a lookup which replaces a Redis one, timing it.
+   */
+  public <T> T callFallback(Supplier<T> fallback) {
+    return fallbackTimer.record(fallback);
+  }
+
+}
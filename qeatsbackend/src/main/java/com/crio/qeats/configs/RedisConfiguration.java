@@ -1,94 +1,178 @@
 
 package com.crio.qeats.configs;
 
-import java.time.Duration;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPool;
 import redis.clients.jedis.JedisPoolConfig;
-
-
+import redis.clients.jedis.Pipeline;
+
+/**
+ * Connection pool to Redis, sized and timed out through the qeats.redis.* properties.
+ *   - Borrowing a connection waits at most qeats.redis.pool.max-wait-ms and then throws a
+ *     JedisException, which callers handle like any other Redis failure.
+ *   - {@link #timeCommand(String, Supplier)} and {@link #pipelined(Jedis, String, Function)}
+ *     record the latency of Redis calls in the qeats.redis.command timer, tagged by command.
+ *     See {@link InstrumentedJedisPool} for the pool metrics.
+ */
 @Component
+@Log4j2
 public class RedisConfiguration {
 
-  public static final String redisHost = "localhost";
-
   // Amount of time after which the redis entries should expire.
   public static final int REDIS_ENTRY_EXPIRY_IN_SECONDS = 3600;
 
+  // Nodes keeping in-process copies of cache entries are told about rewritten keys here.
+  public static final String CACHE_INVALIDATION_CHANNEL = "qeats:cache-invalidation";
+  public static final String CACHE_INVALIDATE_ALL = "*";
+
   // TIP(MODULE_RABBITMQ): RabbitMQ related configs.
   public static final String EXCHANGE_NAME = "rabbitmq-exchange";
   public static final String QUEUE_NAME = "rabbitmq-queue";
   public static final String ROUTING_KEY = "qeats.postorder";
 
 
+  @Value("${spring.redis.host:localhost}")
+  private String redisHost;
+
   private int redisPort;
+
+  @Value("${qeats.redis.pool.max-total:64}")
+  private int poolMaxTotal;
+
+  @Value("${qeats.redis.pool.max-idle:64}")
+  private int poolMaxIdle;
+
+  @Value("${qeats.redis.pool.min-idle:8}")
+  private int poolMinIdle;
+
+  @Value("${qeats.redis.pool.max-wait-ms:200}")
+  private long poolMaxWaitInMillis;
+
+  @Value("${qeats.redis.connect-timeout-ms:2000}")
+  private int connectTimeoutInMillis;
+
+  @Value("${qeats.redis.socket-timeout-ms:2000}")
+  private int socketTimeoutInMillis;
+
   private JedisPool jedisPool;
 
+  @Autowired
+  private RedisCircuitBreaker redisCircuitBreaker;
+
+  @Autowired
+  private MeterRegistry meterRegistry;
+
 
   @Value("${spring.redis.port}")
   public void setRedisPort(int port) {
-    System.out.println("setting up redis port to " + port);
     this.redisPort = port;
   }
 
   /**
    * Initializes the cache to be used in the code.
-   * TIP: Look in the direction of `JedisPool`.
    */
   @PostConstruct
   public void initCache() {
-    System.out.println("🔧 Initializing JedisPool on " + redisHost + ":" + redisPort);
-    this.jedisPool = new JedisPool(redisHost, redisPort);
+    JedisPoolConfig poolConfig = new JedisPoolConfig();
+    poolConfig.setMaxTotal(poolMaxTotal);
+    poolConfig.setMaxIdle(poolMaxIdle);
+    poolConfig.setMinIdle(poolMinIdle);
+    poolConfig.setMaxWaitMillis(poolMaxWaitInMillis);
+    log.info("Connecting to Redis on {}:{} with up to {} connections", redisHost, redisPort,
+        poolMaxTotal);
+    this.jedisPool = new InstrumentedJedisPool(poolConfig, redisHost, redisPort,
+        connectTimeoutInMillis, socketTimeoutInMillis, meterRegistry);
   }
 
 
   /**
    * Checks is cache is intiailized and available.
-   * TIP: This would generally mean checking via {@link JedisPool}
+   * Failures are tracked by {@link RedisCircuitBreaker} instead of pinging on every call, so
+   * callers getting true must report the outcome of their call to it.
    * @return true / false if cache is available or not.
    */
   public boolean isCacheAvailable() {
 
-    if(jedisPool == null || jedisPool.isClosed())
-      return false; 
-
-    try(Jedis jedis = jedisPool.getResource()) {
-      jedis.ping();
-      return true;
-
-    } catch(Exception e) {
-      System.err.println("Redis cache not available"+ e.getMessage());
+    if (jedisPool == null || jedisPool.isClosed()) {
       return false;
     }
+
+    return redisCircuitBreaker.allowRequest();
   }
 
   /**
    * Destroy the cache.
    * TIP: This is useful if cache is stale or while performing tests.
    */
-  @PreDestroy
   public void destroyCache() {
-    if(jedisPool != null && !jedisPool.isClosed() ) {
-      jedisPool.getResource().flushAll();
+    try (Jedis jedis = jedisPool.getResource()) {
+      jedis.flushAll();
+      jedis.publish(CACHE_INVALIDATION_CHANNEL, CACHE_INVALIDATE_ALL);
+    }
+  }
+
+  @PreDestroy
+  public void closePool() {
+    if (jedisPool != null) {
       jedisPool.close();
-      this.jedisPool = null;
     }
   }
 
+  public String getRedisHost() {
+    return redisHost;
+  }
+
+  public int getRedisPort() {
+    return redisPort;
+  }
+
+  public int getConnectTimeoutInMillis() {
+    return connectTimeoutInMillis;
+  }
+
   public JedisPool getJedisPool() {
-      if (jedisPool == null || jedisPool.isClosed()) {
-        try {
-          this.jedisPool = new JedisPool(redisHost, redisPort);
-
-        } catch(Exception e) {
-          e.printStackTrace();
-        }
-      }
-      return jedisPool;
+    return jedisPool;
+  }
+
+  /**
+   * Runs a single Redis command, recording its latency.
+   * @param command name of the command, eg: mget
+   */
+  public <T> T timeCommand(String command, Supplier<T> call) {
+    return getCommandTimer(command).record(call);
+  }
+
+  /**
+   * Sends the commands queued by the given function in one round trip, recording its latency.
+   * @param command name of the batch, eg: cell-fill
+   * @return what the function returned, typically the responses of the queued commands which
+   *     can be read once this returns
+   */
+  public <T> T pipelined(Jedis jedis, String command, Function<Pipeline, T> queueCommands) {
+    return getCommandTimer(command).record(() -> {
+      Pipeline pipeline = jedis.pipelined();
+      T responses = queueCommands.apply(pipeline);
+      pipeline.sync();
+      return responses;
+    });
+  }
+
+  private Timer getCommandTimer(String command) {
+    return Timer.builder("qeats.redis.command")
+        .description("Latency of Redis commands and pipelines")
+        .tag("command", command)
+        .publishPercentileHistogram()
+        .register(meterRegistry);
   }
 
 }
@@ -1,8 +1,10 @@
 package com.crio.qeats.configs;
 
+import com.crio.qeats.utils.Deadline;
 import java.util.concurrent.Executor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
 import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
@@ -17,10 +19,38 @@ public class ThreadPoolConfiguration {
         executor.setMaxPoolSize(8);
         executor.setQueueCapacity(100);
         executor.setThreadNamePrefix("restaurant-");
+        // Search tiers run within the deadline of the request starting them.
+        executor.setTaskDecorator(Deadline::propagate);
         executor.initialize();
 
         return executor;
 
     }
+
+    // Background reloads of stale cache entries, dropped when it falls behind.
+    @Bean(name = "cacheRefreshExecutor")
+    public Executor getCacheRefreshExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(2);
+        executor.setMaxPoolSize(2);
+        executor.setQueueCapacity(50);
+        executor.setThreadNamePrefix("cache-refresh-");
+        executor.initialize();
+
+        return executor;
+    }
+
+    // Writes streamed and asynchronous responses, see WebMvcConfiguration.
+    @Bean(name = "mvcAsyncExecutor")
+    public AsyncTaskExecutor getMvcAsyncExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(8);
+        executor.setMaxPoolSize(32);
+        executor.setQueueCapacity(200);
+        executor.setThreadNamePrefix("mvc-async-");
+        executor.initialize();
+
+        return executor;
+    }
     
 }
@@ -0,0 +1,27 @@
+package com.crio.qeats.configs;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Streamed and asynchronous responses are written by a bounded pool, instead of the thread per
+ * response Spring MVC falls back to as the application defines its own executors. Their
+ * timeout is spring.mvc.async.request-timeout.
+ */
+@Configuration
+public class WebMvcConfiguration implements WebMvcConfigurer {
+
+  @Autowired
+  @Qualifier("mvcAsyncExecutor")
+  private AsyncTaskExecutor mvcAsyncExecutor;
+
+  @Override
+  public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+    configurer.setTaskExecutor(mvcAsyncExecutor);
+  }
+
+}
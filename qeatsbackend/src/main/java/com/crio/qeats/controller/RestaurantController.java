@@ -5,10 +5,19 @@ import com.crio.qeats.dto.Restaurant;
 import com.crio.qeats.exchanges.GetCartResponse;
 import com.crio.qeats.exchanges.GetRestaurantsRequest;
 import com.crio.qeats.exchanges.GetRestaurantsResponse;
+import com.crio.qeats.exchanges.GetSuggestionsRequest;
+import com.crio.qeats.exchanges.GetSuggestionsResponse;
 import com.crio.qeats.services.RestaurantService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import lombok.extern.log4j.Log4j2;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.LocalTime;
 import java.util.ArrayList;
+import java.util.concurrent.CompletionException;
 import javax.validation.Valid;
 
 import com.crio.qeats.exchanges.GetRestaurantsRequest;
@@ -18,6 +27,8 @@ import java.time.LocalTime;
 import javax.validation.Valid;
 import lombok.extern.log4j.Log4j2;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -26,6 +37,8 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 @Log4j2
 @RestController
@@ -39,17 +52,27 @@ public class RestaurantController {
   public static final String CART_CLEAR_API = "/cart/clear";
   public static final String POST_ORDER_API = "/order";
   public static final String GET_ORDERS_API = "/orders";
+  public static final String AUTOCOMPLETE_API = "/autocomplete";
+  // Newline delimited JSON, one restaurant per line.
+  public static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
 
   @Autowired
   private RestaurantService restaurantService;
 
+  @Autowired
+  private ObjectMapper objectMapper;
+
+  @Value("${qeats.restaurants.request-timeout-ms:5000}")
+  private long requestTimeoutInMs;
+
   // TODO: CRIO_TASK_MODULE_MULTITHREADING
   //  Improve the performance of this GetRestaurants API
   //  and keep the functionality same.
   // Get the list of open restaurants near the specified latitude/longitude & matching searchFor.
   // API URI: /qeats/v1/restaurants?latitude=21.93&longitude=23.0&searchFor=tamil
   // Method: GET
-  // Query Params: latitude, longitude, searchFor(optional)
+  // Query Params: latitude, longitude, searchFor(optional), limit(optional, 1-100),
+  //               cursor(optional, the nextCursor of the previous page)
   // Success Output:
   // 1). If searchFor param is present, return restaurants as a list matching the following criteria
   //   1) open now
@@ -73,6 +96,10 @@ public class RestaurantController {
   //          - partial and full matches in any order
   //      Eg: For example, when user searches for "Udupi", "Udupi Bhavan" restaurant should
   //      come ahead of restaurants having "Udupi" in attribute.
+  //   5) if limit is present, return at most limit restaurants from cursor on, and the cursor
+  //      of the next page as nextCursor unless this is the last one
+  //   6) matches are found within qeats.search.deadline-ms, if some could not be the response
+  //      has "partial": true
   // 2). If searchFor param is absent,
   //     1) If there are restaurants near by return the list
   //     2) Else return empty list
@@ -110,31 +137,136 @@ public class RestaurantController {
   // Eg:
   // curl -X GET "http://localhost:8081/qeats/v1/restaurants?latitude=28.4900591&longitude=77.536386&searchFor=tamil"
 
+  // Searches complete on the repository executor, the container thread is released as soon as
+  // they are started. Past qeats.restaurants.request-timeout-ms the response is an empty list
+  // flagged "partial": true.
   @GetMapping(RESTAURANT_API_ENDPOINT+RESTAURANTS_API)
-  public ResponseEntity<GetRestaurantsResponse> getRestaurants(@Valid
+  public DeferredResult<ResponseEntity<GetRestaurantsResponse>> getRestaurants(@Valid
        GetRestaurantsRequest getRestaurantsRequest) {
 
     //log.info("getRestaurants called with {}", getRestaurantsRequest);
-    GetRestaurantsResponse getRestaurantsResponse;
+    DeferredResult<ResponseEntity<GetRestaurantsResponse>> deferredResult =
+        new DeferredResult<>(requestTimeoutInMs);
+    deferredResult.onTimeout(() -> {
+      log.warn("getRestaurants timed out after {}ms for {}", requestTimeoutInMs,
+          getRestaurantsRequest);
+      GetRestaurantsResponse fallbackResponse = new GetRestaurantsResponse(new ArrayList<>());
+      fallbackResponse.setPartial(true);
+      deferredResult.setResult(toResponseEntity(fallbackResponse));
+    });
+
     if(getRestaurantsRequest.getSearchFor() != null) {
 
-      getRestaurantsResponse = restaurantService.findRestaurantsBySearchQuery(getRestaurantsRequest, LocalTime.now());
+      restaurantService.findRestaurantsBySearchQueryAsync(getRestaurantsRequest, LocalTime.now())
+          .whenComplete((getRestaurantsResponse, throwable) -> {
+            if (throwable != null) {
+              deferredResult.setErrorResult(throwable instanceof CompletionException
+                  ? throwable.getCause() : throwable);
+            } else {
+              deferredResult.setResult(toResponseEntity(getRestaurantsResponse));
+            }
+          });
 
     } else {
-      getRestaurantsResponse = restaurantService
-      .findAllRestaurantsCloseBy(getRestaurantsRequest, LocalTime.now());
+      deferredResult.setResult(toResponseEntity(restaurantService
+      .findAllRestaurantsCloseBy(getRestaurantsRequest, LocalTime.now())));
       
     }
+    return deferredResult;
+  }
 
+  private static ResponseEntity<GetRestaurantsResponse> toResponseEntity(
+      GetRestaurantsResponse getRestaurantsResponse) {
     if(getRestaurantsResponse == null) return ResponseEntity.ok().body(new GetRestaurantsResponse());
 
     for (Restaurant restaurant : getRestaurantsResponse.getRestaurants()) {
-      String sanitizedName = restaurant.getName().replaceAll("[Â©éí]", "e");
-      restaurant.setName(sanitizedName);
+      sanitizeName(restaurant);
     }
     return ResponseEntity.ok().body(getRestaurantsResponse);
   }
 
+  private static void sanitizeName(Restaurant restaurant) {
+    String sanitizedName = restaurant.getName().replaceAll("[Â©éí]", "e");
+    restaurant.setName(sanitizedName);
+  }
+
+  // Same as getRestaurants, streamed as newline delimited JSON when the client accepts
+  // application/x-ndjson, so that large result sets are neither built up nor buffered whole.
+  // Restaurants are written, one JSON object per line, as soon as each search tier found them.
+  // API URI: /qeats/v1/restaurants?latitude=21.93&longitude=23.0&searchFor=tamil
+  // Method: GET
+  // Headers: Accept: application/x-ndjson
+  // Query Params: same as getRestaurants, there is no nextCursor: the next page starts at
+  //               cursor + the number of lines received.
+  //
+  // HTTP Code: 200
+  // {"restaurantId":"10","name":"A2B","city":"Hsr Layout", ... }
+  // {"restaurantId":"11","name":"A2B","city":"Hsr Layout", ... }
+  //
+  // Error Response:
+  // HTTP Code: 4xx, if client side error. A failure once streaming started cuts the response.
+  // Eg:
+  // curl -H "Accept: application/x-ndjson" "http://localhost:8081/qeats/v1/restaurants?latitude=28.4900591&longitude=77.536386&searchFor=tamil"
+  @GetMapping(value = RESTAURANT_API_ENDPOINT + RESTAURANTS_API,
+      produces = APPLICATION_NDJSON_VALUE)
+  public ResponseEntity<StreamingResponseBody> streamRestaurants(@Valid
+      GetRestaurantsRequest getRestaurantsRequest) {
+    LocalTime currentTime = LocalTime.now();
+    ObjectWriter restaurantWriter = objectMapper.writerFor(Restaurant.class)
+        .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    StreamingResponseBody responseBody = outputStream -> {
+      try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)
+          .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)) {
+        // Lines are separated by the newlines below only.
+        generator.setRootValueSeparator(null);
+        restaurantService.streamRestaurants(getRestaurantsRequest, currentTime, restaurants -> {
+          try {
+            for (Restaurant restaurant : restaurants) {
+              sanitizeName(restaurant);
+              restaurantWriter.writeValue(generator, restaurant);
+              generator.writeRaw('\n');
+            }
+            // Each batch goes out as it comes.
+            generator.flush();
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+        });
+      }
+    };
+    return ResponseEntity.ok()
+        .contentType(MediaType.parseMediaType(APPLICATION_NDJSON_VALUE))
+        .body(responseBody);
+  }
+
+  // Get type-ahead suggestions of restaurant names, cuisines and dishes as the user types.
+  // API URI: /qeats/v1/autocomplete?prefix=bir&latitude=28.49&longitude=77.53&limit=5
+  // Method: GET
+  // Query Params: prefix, latitude(optional), longitude(optional), limit(optional, 1-20)
+  // Success Output:
+  // 1). Suggestions having a word starting with prefix (ignoring case), most popular first.
+  // 2). If latitude and longitude are present, popularity around that location is used.
+  //
+  // HTTP Code: 200
+  // {
+  //  "suggestions": [
+  //    {
+  //      "text": "Chicken Biryani",
+  //      "type": "DISH"
+  //    }
+  //  ]
+  // }
+  //
+  // Error Response:
+  // HTTP Code: 4xx, if client side error.
+  // Eg:
+  // curl -X GET "http://localhost:8081/qeats/v1/autocomplete?prefix=bir&latitude=28.49&longitude=77.53"
+  @GetMapping(RESTAURANT_API_ENDPOINT + AUTOCOMPLETE_API)
+  public ResponseEntity<GetSuggestionsResponse> getSuggestions(@Valid
+      GetSuggestionsRequest getSuggestionsRequest) {
+    return ResponseEntity.ok().body(restaurantService.findSuggestions(getSuggestionsRequest));
+  }
+
 
   @GetMapping(RESTAURANT_API_ENDPOINT+CART_API)
   public ResponseEntity<GetCartResponse> getCart(@RequestParam("userId") String userId) {
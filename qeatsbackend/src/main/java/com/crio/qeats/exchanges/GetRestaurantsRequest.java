@@ -3,7 +3,10 @@ package com.crio.qeats.exchanges;
 
 import javax.validation.constraints.DecimalMax;
 import javax.validation.constraints.DecimalMin;
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Pattern;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -22,6 +25,14 @@ public class GetRestaurantsRequest {
     @NonNull @NotNull @DecimalMin("-180.0") @DecimalMax("180.0")
     private Double longitude;
     private String searchFor;
+
+    // Searches return at most limit restaurants (all of them when absent), starting after the
+    // ones of the previous pages when cursor is the nextCursor of the previous response.
+    @Min(1) @Max(100)
+    private Integer limit;
+
+    @Pattern(regexp = "\\d{1,9}")
+    private String cursor;
     
 }
 
@@ -1,6 +1,7 @@
 package com.crio.qeats.exchanges;
 
 import com.crio.qeats.dto.Restaurant;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import java.util.List;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -12,4 +13,16 @@ import lombok.NoArgsConstructor;
 public class GetRestaurantsResponse {
     private List<Restaurant> restaurants;
 
+    // Cursor of the next page of a search, absent on the last page.
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String nextCursor;
+
+    // True when some search tiers missed the deadline and were left out, absent otherwise.
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Boolean partial;
+
+    public GetRestaurantsResponse(List<Restaurant> restaurants) {
+        this.restaurants = restaurants;
+    }
+
 }
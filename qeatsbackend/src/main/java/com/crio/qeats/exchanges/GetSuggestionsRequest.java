@@ -0,0 +1,35 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.exchanges;
+
+import javax.validation.constraints.DecimalMax;
+import javax.validation.constraints.DecimalMin;
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Suggestions are scoped to the area around latitude/longitude when both are given.
+@Data
+@NoArgsConstructor
+public class GetSuggestionsRequest {
+
+  @NotNull @Size(max = 100)
+  private String prefix;
+
+  @DecimalMin("-90.0") @DecimalMax("90.0")
+  private Double latitude;
+
+  @DecimalMin("-180.0") @DecimalMax("180.0")
+  private Double longitude;
+
+  @Min(1) @Max(20)
+  private Integer limit = 10;
+
+}
@@ -15,6 +15,7 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 @Data
@@ -26,7 +27,9 @@ public class MenuEntity {
   @Id
   private String id;
 
+  // Lets nearby searches read only the menus of the restaurants around the user.
   @NotNull
+  @Indexed
   private String restaurantId;
 
   @NotNull
@@ -0,0 +1,29 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.models;
+
+import com.crio.qeats.dto.Item;
+import java.util.ArrayList;
+import java.util.List;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Projection of a menu matching a search, read instead of the whole MenuEntity. Items only
+// hold the one named exactly like the search, if any (see MenuRepository).
+@Data
+@NoArgsConstructor
+public class MenuMatch {
+
+  private String restaurantId;
+
+  private List<Item> items = new ArrayList<>();
+
+  public boolean isExactMatch() {
+    return items != null && !items.isEmpty();
+  }
+
+}
@@ -6,12 +6,22 @@
 
 package com.crio.qeats.models;
 
+import com.crio.qeats.utils.OpeningHours;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import java.util.ArrayList;
 import java.util.List;
 import javax.validation.constraints.NotNull;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Transient;
+import org.springframework.data.mongodb.core.geo.GeoJsonPoint;
+import org.springframework.data.mongodb.core.index.GeoSpatialIndexType;
+import org.springframework.data.mongodb.core.index.GeoSpatialIndexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 // Java class that maps to Mongo collection.
@@ -41,6 +51,11 @@ public class RestaurantEntity {
   @NotNull
   private Double longitude;
 
+  // GeoJSON copy of latitude/longitude, set on every save. Not part of the cached JSON.
+  @JsonIgnore
+  @GeoSpatialIndexed(type = GeoSpatialIndexType.GEO_2DSPHERE)
+  private GeoJsonPoint location;
+
   @NotNull
   private String opensAt;
 
@@ -50,5 +65,33 @@ public class RestaurantEntity {
   @NotNull
   private List<String> attributes = new ArrayList<>();
 
+  // Parsed from opensAt/closesAt on first use, neither persisted nor cached.
+  @Transient
+  @JsonIgnore
+  @Setter(AccessLevel.NONE)
+  @EqualsAndHashCode.Exclude
+  @ToString.Exclude
+  private volatile OpeningHours openingHours;
+
+  public void setOpensAt(String opensAt) {
+    this.opensAt = opensAt;
+    this.openingHours = null;
+  }
+
+  public void setClosesAt(String closesAt) {
+    this.closesAt = closesAt;
+    this.openingHours = null;
+  }
+
+  @JsonIgnore
+  public OpeningHours getOpeningHours() {
+    OpeningHours parsedOpeningHours = openingHours;
+    if (parsedOpeningHours == null) {
+      parsedOpeningHours = OpeningHours.parse(opensAt, closesAt);
+      openingHours = parsedOpeningHours;
+    }
+    return parsedOpeningHours;
+  }
+
 }
 
@@ -1,6 +1,8 @@
 package com.crio.qeats.repositories;
 
 import com.crio.qeats.models.MenuEntity;
+import com.crio.qeats.models.MenuMatch;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import org.springframework.data.mongodb.repository.MongoRepository;
@@ -12,10 +14,25 @@ public interface MenuRepository extends MongoRepository<MenuEntity, String> {
 
   List<MenuEntity> findMenusByItemsItemIdIn(List<String> itemIdList);
 
-  @Query("{ 'items.name': { $regex: ?0, $options: 'i' }}")
-  List<MenuEntity> findMenusByItemsNameContainingIgnoreCase(String searchString);
+  // Restaurant ids of the menus with an item whose name matches the regex, along with the
+  // first item whose name matches the exact one ($elemMatch), if any.
+  @Query(value = "{ 'items.name': { $regex: ?0, $options: 'i' } }",
+      fields = "{ 'restaurantId': 1,"
+          + " 'items': { $elemMatch: { 'name': { $regex: ?1, $options: 'i' } } } }")
+  List<MenuMatch> findMenuMatchesByItemsName(String regex, String exactRegex);
 
-  @Query("{ 'items.attributes': { $regex: ?0, $options: 'i' } }")
-  List<MenuEntity> findMenusByItemsAttributesContainingIgnoreCase(String searchString);
+  // Restaurant ids of the menus with an item having an attribute which matches the regex.
+  @Query(value = "{ 'items.attributes': { $regex: ?0, $options: 'i' } }",
+      fields = "{ 'restaurantId': 1 }")
+  List<MenuMatch> findMenuMatchesByItemsAttributes(String regex);
+
+  // Menus of the given restaurants with an item whose name or an attribute matches the regex,
+  // with only the item names and attributes.
+  @Query(value = "{ 'restaurantId': { $in: ?0 }, $or: ["
+      + " { 'items.name': { $regex: ?1, $options: 'i' } },"
+      + " { 'items.attributes': { $regex: ?1, $options: 'i' } } ] }",
+      fields = "{ 'restaurantId': 1, 'items.name': 1, 'items.attributes': 1 }")
+  List<MenuEntity> findMenusByRestaurantIdInAndItemsMatching(Collection<String> restaurantIds,
+      String regex);
 
 }
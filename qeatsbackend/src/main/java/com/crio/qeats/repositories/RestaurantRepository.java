@@ -16,5 +16,10 @@ public interface RestaurantRepository extends MongoRepository<RestaurantEntity,
 
     List<RestaurantEntity> findByRestaurantIdIn(List<String> restuarantIds);
 
+    // Served by the 2dsphere index on location, radius is in radians (kms / earth radius).
+    @Query("{'location': {$geoWithin: {$centerSphere: [[?0, ?1], ?2]}}}")
+    List<RestaurantEntity> findByLocationWithinSphere(double longitude, double latitude,
+        double radiusInRadians);
+
 }
 
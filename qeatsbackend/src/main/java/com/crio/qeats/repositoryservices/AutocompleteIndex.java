@@ -0,0 +1,208 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.repositoryservices;
+
+import ch.hsr.geohash.GeoHash;
+import com.crio.qeats.dto.Item;
+import com.crio.qeats.dto.Suggestion;
+import com.crio.qeats.models.MenuEntity;
+import com.crio.qeats.models.RestaurantEntity;
+import com.crio.qeats.utils.PrefixTrie;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Type-ahead suggestions of restaurant names, cuisines (restaurant attributes) and dishes (item
+ * names), served from {@link PrefixTrie}s so that a lookup does not depend on how many there are.
+ *   - Every word of a suggestion starts a key, "bir" suggests "Chicken Biryani".
+ *   - Suggestions are ranked by popularity: the number of restaurants having them, plus the
+ *     number of times they were searched for as tracked by {@link HotKeyTracker}.
+ *   - Besides the global trie, there is one per {@link #REGION_PRECISION} geohash region with
+ *     the popularity of the suggestions there. A scoped lookup merges the region of the user
+ *     with its neighbours, so suggestions just across a region border are kept.
+ *   - Rebuilt from every load of the {@link RestaurantCatalog}, with the search counts
+ *     tracked at that time.
+ */
+@Component
+@Log4j2
+public class AutocompleteIndex implements RestaurantCatalog.Listener {
+
+  // ~39km x 20km regions.
+  public static final int REGION_PRECISION = 4;
+
+  // Order of equally popular suggestions.
+  private static final Comparator<Suggestion> ALPHABETICAL =
+      Comparator.comparing(Suggestion::getText).thenComparing(Suggestion::getType);
+
+  @Autowired
+  private HotKeyTracker hotKeyTracker;
+
+  @Value("${qeats.autocomplete.max-suggestions:20}")
+  private int maxSuggestions;
+
+  private volatile Snapshot snapshot;
+
+  /**
+   * Replaces the tries with ones built from the restaurants and menus just loaded. The old
+   * tries keep serving suggestions until the new ones are ready.
+   */
+  @Override
+  public void onCatalogLoaded(List<RestaurantEntity> restaurantEntities,
+      List<MenuEntity> menuEntities) {
+    Snapshot newSnapshot = new Snapshot(restaurantEntities, menuEntities,
+        hotKeyTracker.getSearchCounts(Integer.MAX_VALUE), maxSuggestions);
+    snapshot = newSnapshot;
+    log.info("Autocomplete index built with {} suggestions in {} regions",
+        newSnapshot.global.size(), newSnapshot.byRegion.size());
+  }
+
+  /**
+   * Get the most popular suggestions starting with the prefix, around the given location if
+   * it is not null.
+   */
+  public List<Suggestion> suggest(String prefix, Double latitude, Double longitude, int limit) {
+    Snapshot currentSnapshot = snapshot;
+    if (currentSnapshot == null) {
+      return new ArrayList<>();
+    }
+    String key = RestaurantSearchCache.normalize(prefix);
+    if (latitude == null || longitude == null) {
+      return currentSnapshot.global.suggest(key, limit);
+    }
+
+    GeoHash region = GeoHash.withCharacterPrecision(latitude, longitude, REGION_PRECISION);
+    List<GeoHash> regions = new ArrayList<>();
+    regions.add(region);
+    Collections.addAll(regions, region.getAdjacent());
+    Map<Suggestion, Double> scores = new LinkedHashMap<>();
+    for (GeoHash nearRegion : regions) {
+      PrefixTrie<Suggestion> regionTrie = currentSnapshot.byRegion.get(nearRegion.toBase32());
+      if (regionTrie != null) {
+        for (Suggestion suggestion : regionTrie.suggest(key, limit)) {
+          scores.merge(suggestion, regionTrie.getScore(suggestion), Double::sum);
+        }
+      }
+    }
+    return scores.entrySet().stream()
+        .sorted(Map.Entry.<Suggestion, Double>comparingByValue().reversed()
+            .thenComparing(Map.Entry.comparingByKey(ALPHABETICAL)))
+        .limit(limit)
+        .map(Map.Entry::getKey)
+        .collect(Collectors.toList());
+  }
+
+  private static final class Snapshot {
+
+    private final PrefixTrie<Suggestion> global;
+    private final Map<String, PrefixTrie<Suggestion>> byRegion;
+
+    private Snapshot(List<RestaurantEntity> restaurantEntities, List<MenuEntity> menuEntities,
+        Map<String, Double> searchCounts, int maxSuggestions) {
+      // Keyed by type and normalized text, the first spelling seen is shown.
+      Map<String, IndexedSuggestion> suggestions = new HashMap<>();
+      Map<String, String> regionsByRestaurantId = new HashMap<>();
+
+      for (RestaurantEntity restaurantEntity : restaurantEntities) {
+        if (restaurantEntity.getLatitude() == null || restaurantEntity.getLongitude() == null) {
+          continue;
+        }
+        String region = GeoHash.geoHashStringWithCharacterPrecision(
+            restaurantEntity.getLatitude(), restaurantEntity.getLongitude(), REGION_PRECISION);
+        regionsByRestaurantId.put(restaurantEntity.getRestaurantId(), region);
+        addSuggestion(suggestions, restaurantEntity.getName(), Suggestion.Type.RESTAURANT,
+            region, restaurantEntity.getRestaurantId());
+        if (restaurantEntity.getAttributes() != null) {
+          for (String attribute : restaurantEntity.getAttributes()) {
+            addSuggestion(suggestions, attribute, Suggestion.Type.CUISINE, region,
+                restaurantEntity.getRestaurantId());
+          }
+        }
+      }
+      for (MenuEntity menuEntity : menuEntities) {
+        String region = regionsByRestaurantId.get(menuEntity.getRestaurantId());
+        if (region == null || menuEntity.getItems() == null) {
+          continue;
+        }
+        for (Item item : menuEntity.getItems()) {
+          addSuggestion(suggestions, item.getName(), Suggestion.Type.DISH, region,
+              menuEntity.getRestaurantId());
+        }
+      }
+
+      // Added in a fixed order, for equally popular suggestions to come in that order.
+      List<IndexedSuggestion> sortedSuggestions = new ArrayList<>(suggestions.values());
+      sortedSuggestions.sort(Comparator.comparing(
+          indexedSuggestion -> indexedSuggestion.suggestion, ALPHABETICAL));
+      PrefixTrie.Builder<Suggestion> globalTrie = PrefixTrie.builder(maxSuggestions);
+      Map<String, PrefixTrie.Builder<Suggestion>> regionTries = new HashMap<>();
+      for (IndexedSuggestion indexedSuggestion : sortedSuggestions) {
+        double searchCount = searchCounts.getOrDefault(indexedSuggestion.text, 0.0);
+        int restaurants = 0;
+        for (Map.Entry<String, Set<String>> region
+            : indexedSuggestion.restaurantIdsByRegion.entrySet()) {
+          addKeys(regionTries.computeIfAbsent(region.getKey(),
+              r -> PrefixTrie.builder(maxSuggestions)), indexedSuggestion,
+              region.getValue().size() + searchCount);
+          restaurants += region.getValue().size();
+        }
+        addKeys(globalTrie, indexedSuggestion, restaurants + searchCount);
+      }
+      this.global = globalTrie.build();
+      this.byRegion = new HashMap<>();
+      regionTries.forEach((region, regionTrie) -> byRegion.put(region, regionTrie.build()));
+    }
+
+    private static void addSuggestion(Map<String, IndexedSuggestion> suggestions, String text,
+        Suggestion.Type type, String region, String restaurantId) {
+      if (text == null || text.trim().isEmpty()) {
+        return;
+      }
+      String normalizedText = RestaurantSearchCache.normalize(text);
+      suggestions.computeIfAbsent(type + ":" + normalizedText, k -> new IndexedSuggestion(
+          new Suggestion(text.trim().replaceAll("\\s+", " "), type), normalizedText))
+          .restaurantIdsByRegion.computeIfAbsent(region, r -> new HashSet<>())
+          .add(restaurantId);
+    }
+
+    // Keys from the start of each word of the normalized text.
+    private static void addKeys(PrefixTrie.Builder<Suggestion> builder,
+        IndexedSuggestion indexedSuggestion, double score) {
+      String text = indexedSuggestion.text;
+      for (int start = 0; start < text.length(); start++) {
+        if (start == 0 || text.charAt(start - 1) == ' ') {
+          builder.add(text.substring(start), indexedSuggestion.suggestion, score);
+        }
+      }
+    }
+  }
+
+  private static final class IndexedSuggestion {
+
+    private final Suggestion suggestion;
+    private final String text;
+    // Restaurants having the suggestion, keyed by region.
+    private final Map<String, Set<String>> restaurantIdsByRegion = new HashMap<>();
+
+    private IndexedSuggestion(Suggestion suggestion, String text) {
+      this.suggestion = suggestion;
+      this.text = text;
+    }
+  }
+
+}
@@ -0,0 +1,33 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.repositoryservices;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import java.io.IOException;
+
+/**
+ * Encoding of the values stored in the Redis cache, selected with qeats.cache.codec.
+ */
+public interface CacheCodec {
+
+  /**
+   * Name used to select this codec in the configuration.
+   */
+  String getName();
+
+  /**
+   * Tag written in front of every entry, so that entries written with another codec are
+   * still recognised while the configuration is rolled over. Tags are never reused for a
+   * different encoding and stay below 0x20, so they cannot be mistaken for untagged JSON.
+   */
+  byte getFormatTag();
+
+  byte[] encode(Object value) throws IOException;
+
+  <T> T decode(byte[] bytes, int offset, int length, TypeReference<T> type) throws IOException;
+
+}
@@ -0,0 +1,27 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.repositoryservices;
+
+import lombok.Value;
+
+/**
+ * A value read from the cache, with the time after which it should be recomputed in the
+ * background while still being served.
+ */
+@Value
+public class CacheEntry<T> {
+
+  T value;
+
+  // Epoch millis, 0 if the entry was written without one.
+  long refreshAtMillis;
+
+  public boolean isStale(long nowMillis) {
+    return refreshAtMillis != 0 && nowMillis >= refreshAtMillis;
+  }
+
+}
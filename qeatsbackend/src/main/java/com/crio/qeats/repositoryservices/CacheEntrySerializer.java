@@ -0,0 +1,175 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.repositoryservices;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import javax.annotation.PostConstruct;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4SafeDecompressor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Turns cache values into Redis entries and back.
+ *   - An entry is the {@link CacheCodec#getFormatTag()} of the codec which wrote it, a flags
+ *     byte, the time at which it should be refreshed if it has one and the encoded value.
+ *     Every known codec is readable whichever one is configured for writing, and entries with
+ *     an unknown tag read as misses and get rewritten.
+ *   - Values encoding to more than qeats.cache.compress-above-bytes are LZ4 compressed, with
+ *     their original length stored before the compressed bytes.
+ */
+@Component
+public class CacheEntrySerializer {
+
+  private static final int HEADER_LENGTH = 2;
+  private static final int REFRESH_AT_LENGTH = 8;
+  private static final int ORIGINAL_LENGTH_LENGTH = 4;
+  // LZ4 cannot expand its input more than this, a larger original length is corrupt.
+  private static final int MAX_LZ4_EXPANSION = 255;
+  private static final byte FLAG_LZ4 = 0x01;
+  private static final byte FLAG_REFRESH_AT = 0x02;
+  private static final byte KNOWN_FLAGS = FLAG_LZ4 | FLAG_REFRESH_AT;
+
+  @Autowired
+  private List<CacheCodec> cacheCodecs;
+
+  @Value("${qeats.cache.codec:smile}")
+  private String codecName;
+
+  // Zero disables compression.
+  @Value("${qeats.cache.compress-above-bytes:1024}")
+  private int compressAboveBytes;
+
+  private final CacheCodec[] codecsByTag = new CacheCodec[256];
+  private CacheCodec writeCodec;
+
+  private final LZ4Compressor compressor = LZ4Factory.fastestInstance().fastCompressor();
+  // Bounded by the length of the entry, so that a truncated one fails instead of being read past.
+  private final LZ4SafeDecompressor decompressor =
+      LZ4Factory.fastestInstance().safeDecompressor();
+
+  @PostConstruct
+  public void initCodecs() {
+    for (CacheCodec cacheCodec : cacheCodecs) {
+      int tag = cacheCodec.getFormatTag() & 0xff;
+      if (codecsByTag[tag] != null) {
+        throw new IllegalStateException("Cache codecs " + codecsByTag[tag].getName() + " and "
+            + cacheCodec.getName() + " share the format tag " + tag);
+      }
+      codecsByTag[tag] = cacheCodec;
+      if (cacheCodec.getName().equals(codecName)) {
+        writeCodec = cacheCodec;
+      }
+    }
+    if (writeCodec == null) {
+      throw new IllegalArgumentException("Unknown cache codec " + codecName);
+    }
+  }
+
+  /**
+   * Encode a value into a Redis entry.
+   * @param refreshAtMillis epoch millis after which the value should be recomputed, 0 if never
+   */
+  public byte[] serialize(Object value, long refreshAtMillis) throws IOException {
+    byte[] encoded = writeCodec.encode(value);
+    byte flags = refreshAtMillis == 0 ? 0 : FLAG_REFRESH_AT;
+    int valueOffset = HEADER_LENGTH + (refreshAtMillis == 0 ? 0 : REFRESH_AT_LENGTH);
+
+    byte[] entry = null;
+    int entryLength = 0;
+    if (compressAboveBytes > 0 && encoded.length > compressAboveBytes) {
+      int compressedOffset = valueOffset + ORIGINAL_LENGTH_LENGTH;
+      int maxCompressedLength = compressor.maxCompressedLength(encoded.length);
+      entry = new byte[compressedOffset + maxCompressedLength];
+      int compressedLength = compressor.compress(encoded, 0, encoded.length, entry,
+          compressedOffset, maxCompressedLength);
+      ByteBuffer.wrap(entry).putInt(valueOffset, encoded.length);
+      flags |= FLAG_LZ4;
+      entryLength = compressedOffset + compressedLength;
+      // Incompressible values are stored as they are.
+      if (compressedLength >= encoded.length) {
+        entry = null;
+        flags &= ~FLAG_LZ4;
+      }
+    }
+    if (entry == null) {
+      entry = new byte[valueOffset + encoded.length];
+      System.arraycopy(encoded, 0, entry, valueOffset, encoded.length);
+      entryLength = entry.length;
+    }
+
+    entry[0] = writeCodec.getFormatTag();
+    entry[1] = flags;
+    if (refreshAtMillis != 0) {
+      ByteBuffer.wrap(entry).putLong(HEADER_LENGTH, refreshAtMillis);
+    }
+    return entryLength == entry.length ? entry : Arrays.copyOf(entry, entryLength);
+  }
+
+  /**
+   * Decode a Redis entry.
+   * @return the entry, or null if the entry was not written in a known format
+   * @throws IOException if the entry is in a known format but corrupt
+   */
+  public <T> CacheEntry<T> deserialize(byte[] entry, TypeReference<T> type) throws IOException {
+    if (entry.length < HEADER_LENGTH) {
+      return null;
+    }
+    CacheCodec cacheCodec = codecsByTag[entry[0] & 0xff];
+    byte flags = entry[1];
+    if (cacheCodec == null || (flags & ~KNOWN_FLAGS) != 0) {
+      return null;
+    }
+
+    ByteBuffer buffer = ByteBuffer.wrap(entry);
+    int valueOffset = HEADER_LENGTH;
+    long refreshAtMillis = 0;
+    if ((flags & FLAG_REFRESH_AT) != 0) {
+      if (entry.length < valueOffset + REFRESH_AT_LENGTH) {
+        throw new IOException("Truncated cache entry");
+      }
+      refreshAtMillis = buffer.getLong(valueOffset);
+      valueOffset += REFRESH_AT_LENGTH;
+    }
+    if ((flags & FLAG_LZ4) == 0) {
+      return new CacheEntry<>(
+          cacheCodec.decode(entry, valueOffset, entry.length - valueOffset, type),
+          refreshAtMillis);
+    }
+
+    if (entry.length < valueOffset + ORIGINAL_LENGTH_LENGTH) {
+      throw new IOException("Truncated compressed cache entry");
+    }
+    int originalLength = buffer.getInt(valueOffset);
+    int compressedOffset = valueOffset + ORIGINAL_LENGTH_LENGTH;
+    int compressedLength = entry.length - compressedOffset;
+    // Checked before allocating, so that a corrupt length cannot ask for gigabytes.
+    if (originalLength < 0 || originalLength > (long) compressedLength * MAX_LZ4_EXPANSION) {
+      throw new IOException("Corrupt compressed cache entry");
+    }
+    byte[] decompressed = new byte[originalLength];
+    int decompressedLength;
+    try {
+      decompressedLength = decompressor.decompress(entry, compressedOffset, compressedLength,
+          decompressed, 0, originalLength);
+    } catch (RuntimeException e) {
+      throw new IOException("Corrupt compressed cache entry", e);
+    }
+    if (decompressedLength != originalLength) {
+      throw new IOException("Truncated compressed cache entry");
+    }
+    return new CacheEntry<>(cacheCodec.decode(decompressed, 0, originalLength, type),
+        refreshAtMillis);
+  }
+
+}
@@ -0,0 +1,150 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.repositoryservices;
+
+import ch.hsr.geohash.BoundingBox;
+import ch.hsr.geohash.GeoHash;
+import com.google.common.collect.Lists;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+/**
+ * Warms the caches with the hottest cells and searches of the previous run, as recorded by
+ * {@link HotKeyTracker}, once the application has started.
+ *   - Runs after the other startup listeners, so that the restaurant locator is ready.
+ *   - At most qeats.warm-up.concurrency loads run at a time so the database is not flooded,
+ *     and warming stops after qeats.warm-up.timeout-ms.
+ *   - Reports the application OUT_OF_SERVICE on the health endpoint until it is done, so load
+ *     balancers only send traffic to warm instances.
+ */
+@Component
+@Log4j2
+public class CacheWarmer implements HealthIndicator {
+
+  private static final int CELLS_PER_LOAD = 16;
+
+  @Autowired
+  private HotKeyTracker hotKeyTracker;
+
+  @Autowired
+  private RestaurantCellCache restaurantCellCache;
+
+  @Autowired
+  private RestaurantRepositoryService restaurantRepositoryService;
+
+  @Value("${qeats.warm-up.concurrency:4}")
+  private int concurrency;
+
+  @Value("${qeats.warm-up.timeout-ms:30000}")
+  private long timeoutInMillis;
+
+  @Value("${qeats.warm-up.max-cells:1000}")
+  private int maxCells;
+
+  @Value("${qeats.warm-up.max-searches:200}")
+  private int maxSearches;
+
+  private volatile boolean warm;
+  private volatile int warmedCells;
+  private volatile int warmedSearches;
+
+  @EventListener(ApplicationReadyEvent.class)
+  @Order(Ordered.LOWEST_PRECEDENCE)
+  public void warmUp() {
+    if (!hotKeyTracker.isEnabled()) {
+      warm = true;
+      return;
+    }
+
+    long startTimeInMillis = System.currentTimeMillis();
+    List<String> hotCells = hotKeyTracker.getHotCells(maxCells);
+    List<HotSearch> hotSearches = hotKeyTracker.getHotSearches(maxSearches);
+    ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+    try {
+      List<Future<Integer>> cellLoads = new ArrayList<>();
+      for (List<String> geoHashes : Lists.partition(hotCells, CELLS_PER_LOAD)) {
+        cellLoads.add(executor.submit(() ->
+            restaurantCellCache.getRestaurantEntitiesInCells(geoHashes).size()));
+      }
+      List<Future<Integer>> searches = new ArrayList<>();
+      for (HotSearch hotSearch : hotSearches) {
+        searches.add(executor.submit(() -> warmSearch(hotSearch)));
+      }
+
+      long deadlineInMillis = startTimeInMillis + timeoutInMillis;
+      warmedCells = sumCompleted(cellLoads, deadlineInMillis);
+      warmedSearches = sumCompleted(searches, deadlineInMillis);
+    } finally {
+      executor.shutdownNow();
+      warm = true;
+    }
+    log.info("Warmed {} of {} hot cells and {} of {} hot searches in {}ms", warmedCells,
+        hotCells.size(), warmedSearches, hotSearches.size(),
+        System.currentTimeMillis() - startTimeInMillis);
+  }
+
+  @Override
+  public Health health() {
+    Health.Builder health = warm ? Health.up() : Health.outOfService();
+    return health.withDetail("warmedCells", warmedCells)
+        .withDetail("warmedSearches", warmedSearches)
+        .build();
+  }
+
+  // Runs every tier at the centre of the cell, which fills the entries of the whole cell.
+  private int warmSearch(HotSearch hotSearch) {
+    BoundingBox cell = GeoHash.fromGeohashString(hotSearch.getGeoHash()).getBoundingBox();
+    Double latitude = (cell.getMinLat() + cell.getMaxLat()) / 2;
+    Double longitude = (cell.getMinLon() + cell.getMaxLon()) / 2;
+    LocalTime currentTime = LocalTime.now();
+    String query = hotSearch.getQuery();
+    Double servingRadiusInKms = hotSearch.getServingRadiusInKms();
+
+    restaurantRepositoryService.findRestaurantsByName(latitude, longitude, query, currentTime,
+        servingRadiusInKms);
+    restaurantRepositoryService.findRestaurantsByAttributes(latitude, longitude, query,
+        currentTime, servingRadiusInKms);
+    restaurantRepositoryService.findRestaurantsByItemName(latitude, longitude, query,
+        currentTime, servingRadiusInKms);
+    restaurantRepositoryService.findRestaurantsByItemAttributes(latitude, longitude, query,
+        currentTime, servingRadiusInKms);
+    return 1;
+  }
+
+  // Sum of the results of the tasks which completed successfully before the deadline.
+  private int sumCompleted(List<Future<Integer>> futures, long deadlineInMillis) {
+    int completed = 0;
+    for (Future<Integer> future : futures) {
+      try {
+        completed += future.get(Math.max(0, deadlineInMillis - System.currentTimeMillis()),
+            TimeUnit.MILLISECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return completed;
+      } catch (Exception e) {
+        log.debug("Warm-up task did not complete: {}", e.getMessage());
+      }
+    }
+    return completed;
+  }
+
+}
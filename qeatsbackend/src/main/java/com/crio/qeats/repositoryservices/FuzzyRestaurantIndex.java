@@ -0,0 +1,129 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.repositoryservices;
+
+import com.crio.qeats.dto.Item;
+import com.crio.qeats.models.MenuEntity;
+import com.crio.qeats.models.RestaurantEntity;
+import com.crio.qeats.utils.TrigramIndex;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Typo tolerant search of restaurant names and item names, with a {@link TrigramIndex}, used as
+ * the last search tier when the others find too little.
+ *   - Only built and queried with qeats.search.fuzzy.enabled. Rebuilt from every load of the
+ *     {@link RestaurantCatalog}.
+ *   - A query expands each of its words to at most qeats.search.fuzzy.max-expansions close
+ *     words, computes at most qeats.search.fuzzy.max-verifications edit distances and stops
+ *     after qeats.search.fuzzy.timeout-ms, whichever comes first, so that it cannot dominate
+ *     the latency of a search.
+ *   - Matches come closest first, then in the order of the restaurants collection.
+ */
+@Component
+@Log4j2
+public class FuzzyRestaurantIndex implements RestaurantCatalog.Listener {
+
+  @Value("${qeats.search.fuzzy.enabled:false}")
+  private boolean enabled;
+
+  @Value("${qeats.search.fuzzy.max-expansions:20}")
+  private int maxExpansions;
+
+  @Value("${qeats.search.fuzzy.max-verifications:2000}")
+  private int maxVerifications;
+
+  @Value("${qeats.search.fuzzy.timeout-ms:20}")
+  private long timeoutInMs;
+
+  private volatile Snapshot snapshot = new Snapshot(Collections.emptyList(),
+      Collections.emptyList());
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Replaces the index with one built from the restaurants and menus just loaded. The old
+   * index keeps serving searches until the new one is ready.
+   */
+  @Override
+  public void onCatalogLoaded(List<RestaurantEntity> restaurantEntities,
+      List<MenuEntity> menuEntities) {
+    if (!enabled) {
+      return;
+    }
+    Snapshot newSnapshot = new Snapshot(restaurantEntities, menuEntities);
+    snapshot = newSnapshot;
+    log.info("Fuzzy search index built with {} restaurants and {} values",
+        newSnapshot.restaurantEntities.length, newSnapshot.values.size());
+  }
+
+  /**
+   * Get the restaurants with a name or an item name close to the query, closest first.
+   * @param query a {@link RestaurantSearchCache#normalize(String)}d search string
+   * @return no restaurants when fuzzy search is disabled
+   */
+  public List<RestaurantEntity> findRestaurantEntitiesSimilarTo(String query) {
+    if (!enabled) {
+      return new ArrayList<>();
+    }
+    Snapshot current = snapshot;
+    long startTime = System.nanoTime();
+    int[] positions = current.values.findSimilar(query, new TrigramIndex.Limits(maxExpansions,
+        maxVerifications, TimeUnit.MILLISECONDS.toNanos(timeoutInMs)));
+    log.debug("Fuzzy search of {} found {} restaurants in {} us", query, positions.length,
+        TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startTime));
+
+    List<RestaurantEntity> matches = new ArrayList<>(positions.length);
+    for (int position : positions) {
+      matches.add(current.restaurantEntities[position]);
+    }
+    return matches;
+  }
+
+  // Documents of the index are positions in restaurantEntities.
+  private static final class Snapshot {
+    private final RestaurantEntity[] restaurantEntities;
+    private final TrigramIndex values;
+
+    private Snapshot(List<RestaurantEntity> restaurantEntities, List<MenuEntity> menuEntities) {
+      this.restaurantEntities = restaurantEntities.toArray(new RestaurantEntity[0]);
+      TrigramIndex.Builder valuesBuilder = TrigramIndex.builder();
+      Map<String, Integer> positionsById = new HashMap<>();
+      for (int position = 0; position < this.restaurantEntities.length; position++) {
+        RestaurantEntity restaurantEntity = this.restaurantEntities[position];
+        positionsById.put(restaurantEntity.getRestaurantId(), position);
+        addValue(valuesBuilder, position, restaurantEntity.getName());
+      }
+      for (MenuEntity menuEntity : menuEntities) {
+        Integer position = positionsById.get(menuEntity.getRestaurantId());
+        if (position == null || menuEntity.getItems() == null) {
+          continue;
+        }
+        for (Item item : menuEntity.getItems()) {
+          addValue(valuesBuilder, position, item.getName());
+        }
+      }
+      values = valuesBuilder.build();
+    }
+
+    private static void addValue(TrigramIndex.Builder builder, int position, String value) {
+      if (value != null) {
+        builder.add(position, RestaurantSearchCache.normalize(value));
+      }
+    }
+  }
+
+}
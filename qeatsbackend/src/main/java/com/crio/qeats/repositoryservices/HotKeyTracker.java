@@ -0,0 +1,141 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.repositoryservices;
+
+import com.crio.qeats.utils.DecayingTopK;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Counts the cells and searches this node serves most, so that a restarted node can warm its
+ * caches with them (see {@link CacheWarmer}).
+ *   - Counts are kept in {@link DecayingTopK} sketches of qeats.hot-keys.capacity keys.
+ *   - Every qeats.hot-keys.snapshot-interval-ms, and on shutdown, the counts are halved and
+ *     written to qeats.hot-keys.file, so the snapshot follows the recent traffic. An empty file
+ *     name turns the tracking off.
+ */
+@Component
+@Log4j2
+public class HotKeyTracker {
+
+  private static final double DECAY_FACTOR = 0.5;
+  private static final TypeReference<Map<String, Map<String, Double>>> SNAPSHOT_TYPE =
+      new TypeReference<Map<String, Map<String, Double>>>() {};
+
+  @Value("${qeats.hot-keys.file:}")
+  private String snapshotFile;
+
+  @Value("${qeats.hot-keys.capacity:1000}")
+  private int capacity;
+
+  @Autowired
+  private ObjectMapper objectMapper;
+
+  private DecayingTopK<String> hotCells;
+  // Keyed by "<serving radius> <geohash> <query>".
+  private DecayingTopK<String> hotSearches;
+
+  @PostConstruct
+  public void loadSnapshot() {
+    hotCells = new DecayingTopK<>(capacity);
+    hotSearches = new DecayingTopK<>(capacity);
+    if (!isEnabled() || !Files.exists(Paths.get(snapshotFile))) {
+      return;
+    }
+    try {
+      Map<String, Map<String, Double>> snapshot =
+          objectMapper.readValue(Paths.get(snapshotFile).toFile(), SNAPSHOT_TYPE);
+      snapshot.getOrDefault("cells", new HashMap<>()).forEach(hotCells::add);
+      snapshot.getOrDefault("searches", new HashMap<>()).forEach(hotSearches::add);
+      log.info("Loaded {} hot cells and {} hot searches from {}", hotCells.size(),
+          hotSearches.size(), snapshotFile);
+    } catch (IOException e) {
+      log.warn("Ignoring unreadable hot keys snapshot {}: {}", snapshotFile, e.getMessage());
+    }
+  }
+
+  public boolean isEnabled() {
+    return !snapshotFile.isEmpty();
+  }
+
+  public void recordCells(List<String> geoHashes) {
+    if (isEnabled()) {
+      geoHashes.forEach(hotCells::add);
+    }
+  }
+
+  public void recordSearch(String query, String geoHash, Double servingRadiusInKms) {
+    if (isEnabled()) {
+      hotSearches.add(servingRadiusInKms + " " + geoHash + " " + query);
+    }
+  }
+
+  public List<String> getHotCells(int limit) {
+    return new ArrayList<>(hotCells.top(limit).keySet());
+  }
+
+  public List<HotSearch> getHotSearches(int limit) {
+    return hotSearches.top(limit).keySet().stream()
+        .map(key -> key.split(" ", 3))
+        .map(parts -> new HotSearch(Double.valueOf(parts[0]), parts[1], parts[2]))
+        .collect(Collectors.toList());
+  }
+
+  /**
+   * Get how often the hottest searches were made, keyed by query, whatever the cell and the
+   * serving radius they were made with.
+   */
+  public Map<String, Double> getSearchCounts(int limit) {
+    Map<String, Double> searchCounts = new HashMap<>();
+    hotSearches.top(limit).forEach((key, count) ->
+        searchCounts.merge(key.split(" ", 3)[2], count, Double::sum));
+    return searchCounts;
+  }
+
+  @Scheduled(fixedDelayString = "${qeats.hot-keys.snapshot-interval-ms:60000}",
+      initialDelayString = "${qeats.hot-keys.snapshot-interval-ms:60000}")
+  @PreDestroy
+  public void saveSnapshot() {
+    if (!isEnabled()) {
+      return;
+    }
+    Map<String, Map<String, Double>> snapshot = new HashMap<>();
+    snapshot.put("cells", hotCells.top(capacity));
+    snapshot.put("searches", hotSearches.top(capacity));
+    hotCells.decay(DECAY_FACTOR);
+    hotSearches.decay(DECAY_FACTOR);
+
+    Path target = Paths.get(snapshotFile).toAbsolutePath();
+    try {
+      // Written aside and moved, so a crash never leaves a truncated snapshot.
+      Path temporary = Files.createTempFile(target.getParent(), ".hot-keys", ".tmp");
+      objectMapper.writeValue(temporary.toFile(), snapshot);
+      Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      log.warn("Saving hot keys snapshot to {} failed: {}", snapshotFile, e.getMessage());
+    }
+  }
+
+}
@@ -0,0 +1,19 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.repositoryservices;
+
+import lombok.Value;
+
+/**
+ * A search as cached by {@link RestaurantSearchCache}, for all of its tiers.
+ */
+@Value
+public class HotSearch {
+  Double servingRadiusInKms;
+  String geoHash;
+  String query;
+}
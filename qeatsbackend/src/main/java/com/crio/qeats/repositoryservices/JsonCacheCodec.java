@@ -0,0 +1,45 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.repositoryservices;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Plain JSON, readable with redis-cli but the largest and slowest to parse.
+ */
+@Component
+public class JsonCacheCodec implements CacheCodec {
+
+  @Autowired
+  private ObjectMapper objectMapper;
+
+  @Override
+  public String getName() {
+    return "json";
+  }
+
+  @Override
+  public byte getFormatTag() {
+    return 0x01;
+  }
+
+  @Override
+  public byte[] encode(Object value) throws IOException {
+    return objectMapper.writeValueAsBytes(value);
+  }
+
+  @Override
+  public <T> T decode(byte[] bytes, int offset, int length, TypeReference<T> type)
+      throws IOException {
+    return objectMapper.readValue(bytes, offset, length, type);
+  }
+
+}
@@ -0,0 +1,281 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.repositoryservices;
+
+import com.crio.qeats.models.MenuEntity;
+import com.crio.qeats.models.RestaurantEntity;
+import com.crio.qeats.repositoryservices.RestaurantSearchCache.SearchTier;
+import com.crio.qeats.utils.Deadline;
+import com.mongodb.client.AggregateIterable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PostConstruct;
+import lombok.extern.log4j.Log4j2;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.AutowireCapableBeanFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Searches the tiers with aggregations, instead of one query per tier plus a restaurant lookup
+ * per item tier.
+ *   - The name and attributes tiers are a single aggregation on the restaurants: a $match on
+ *     either regex, then a $facet splitting the matches by tier. Only the restaurants matching
+ *     one of them reach the $facet.
+ *   - Each item tier is an aggregation on the menus: a $match on the items, then a $lookup
+ *     joining the matching menus to their restaurants. Its results are streamed, so they are
+ *     not bounded by the 16MB of a single document.
+ *   - Restaurants are projected down to the fields of the Restaurant DTO.
+ *   - The regexes are the ones of {@link MongoRestaurantSearcher}, so the matches are the same.
+ *   - Within a {@link Deadline}, every aggregation gets the time left as its maxTimeMS.
+ * Needs MongoDB 3.4 or later, for $facet and $replaceRoot. The version of the server is checked
+ * on startup, and older servers are searched by a {@link MongoRestaurantSearcher} instead.
+ */
+@Component
+@Log4j2
+@ConditionalOnProperty(name = RestaurantSearcher.STRATEGY_PROPERTY, havingValue = "aggregation")
+public class MongoAggregationRestaurantSearcher implements RestaurantSearcher {
+
+  private static final Document RESTAURANT_FIELDS = new Document()
+      .append("restaurantId", 1)
+      .append("name", 1)
+      .append("city", 1)
+      .append("imageUrl", 1)
+      .append("latitude", 1)
+      .append("longitude", 1)
+      .append("opensAt", 1)
+      .append("closesAt", 1)
+      .append("attributes", 1);
+
+  private static final int[] MIN_SERVER_VERSION = {3, 4};
+
+  @Autowired
+  private MongoTemplate mongoTemplate;
+
+  @Autowired
+  private AutowireCapableBeanFactory beanFactory;
+
+  // Set when the server is too old for the aggregations.
+  private RestaurantSearcher fallback;
+
+  @PostConstruct
+  public void checkServerVersion() {
+    Document buildInfo;
+    try {
+      buildInfo = mongoTemplate.executeCommand(new Document("buildInfo", 1));
+    } catch (DataAccessException e) {
+      log.warn("Could not check the MongoDB version, assuming it supports the search "
+          + "aggregations: {}", e.getMessage());
+      return;
+    }
+    List<?> version = buildInfo.get("versionArray", List.class);
+    if (version != null && !isAtLeast(version, MIN_SERVER_VERSION)) {
+      log.warn("MongoDB {} is older than 3.4, searching with regex queries instead",
+          buildInfo.get("version"));
+      fallback = beanFactory.createBean(MongoRestaurantSearcher.class);
+    }
+  }
+
+  @Override
+  public boolean searchesAllTiersAtOnce() {
+    return fallback == null;
+  }
+
+  @Override
+  public Map<SearchTier, List<RestaurantEntity>> findRestaurantEntitiesByAllTiers(String query) {
+    if (fallback != null) {
+      return fallback.findRestaurantEntitiesByAllTiers(query);
+    }
+    return aggregate(query, EnumSet.allOf(SearchTier.class));
+  }
+
+  @Override
+  public List<RestaurantEntity> findRestaurantEntitiesByName(String query) {
+    if (fallback != null) {
+      return fallback.findRestaurantEntitiesByName(query);
+    }
+    return aggregate(query, EnumSet.of(SearchTier.NAME)).get(SearchTier.NAME);
+  }
+
+  @Override
+  public List<RestaurantEntity> findRestaurantEntitiesByAttributes(String query) {
+    if (fallback != null) {
+      return fallback.findRestaurantEntitiesByAttributes(query);
+    }
+    return aggregate(query, EnumSet.of(SearchTier.ATTRIBUTES)).get(SearchTier.ATTRIBUTES);
+  }
+
+  @Override
+  public List<RestaurantEntity> findRestaurantEntitiesByItemName(String query) {
+    if (fallback != null) {
+      return fallback.findRestaurantEntitiesByItemName(query);
+    }
+    return aggregate(query, EnumSet.of(SearchTier.ITEM_NAME)).get(SearchTier.ITEM_NAME);
+  }
+
+  @Override
+  public List<RestaurantEntity> findRestaurantEntitiesByItemAttributes(String query) {
+    if (fallback != null) {
+      return fallback.findRestaurantEntitiesByItemAttributes(query);
+    }
+    return aggregate(query, EnumSet.of(SearchTier.ITEM_ATTRIBUTES))
+        .get(SearchTier.ITEM_ATTRIBUTES);
+  }
+
+  private static boolean isAtLeast(List<?> version, int[] minVersion) {
+    for (int i = 0; i < minVersion.length; i++) {
+      int part = i < version.size() ? ((Number) version.get(i)).intValue() : 0;
+      if (part != minVersion[i]) {
+        return part > minVersion[i];
+      }
+    }
+    return true;
+  }
+
+  private Map<SearchTier, List<RestaurantEntity>> aggregate(String query,
+      Set<SearchTier> searchTiers) {
+    Map<SearchTier, List<RestaurantEntity>> restaurantEntitiesByTier =
+        new EnumMap<>(SearchTier.class);
+    Set<SearchTier> restaurantTiers = EnumSet.of(SearchTier.NAME, SearchTier.ATTRIBUTES);
+    restaurantTiers.retainAll(searchTiers);
+    if (!restaurantTiers.isEmpty()) {
+      restaurantEntitiesByTier.putAll(aggregateRestaurants(query, restaurantTiers));
+    }
+    if (searchTiers.contains(SearchTier.ITEM_NAME)) {
+      restaurantEntitiesByTier.put(SearchTier.ITEM_NAME,
+          aggregateMenus(buildItemNameMatch(query)));
+    }
+    if (searchTiers.contains(SearchTier.ITEM_ATTRIBUTES)) {
+      restaurantEntitiesByTier.put(SearchTier.ITEM_ATTRIBUTES,
+          aggregateMenus(buildItemAttributesMatch(query)));
+    }
+
+    List<RestaurantEntity> nameMatches = restaurantEntitiesByTier.get(SearchTier.NAME);
+    if (nameMatches != null) {
+      nameMatches.sort((r1, r2) -> Boolean.compare(
+          r2.getName().equalsIgnoreCase(query), r1.getName().equalsIgnoreCase(query)));
+    }
+    return restaurantEntitiesByTier;
+  }
+
+  // A single tier needs no $facet, its matches are streamed like those of the item tiers.
+  private Map<SearchTier, List<RestaurantEntity>> aggregateRestaurants(String query,
+      Set<SearchTier> restaurantTiers) {
+    Map<SearchTier, List<RestaurantEntity>> restaurantEntitiesByTier =
+        new EnumMap<>(SearchTier.class);
+    if (restaurantTiers.size() == 1) {
+      SearchTier searchTier = restaurantTiers.iterator().next();
+      restaurantEntitiesByTier.put(searchTier, readRestaurantEntities(
+          run(RestaurantEntity.class, Arrays.asList(
+              new Document("$match", buildRestaurantMatch(searchTier, query)),
+              new Document("$project", RESTAURANT_FIELDS)))));
+      return restaurantEntitiesByTier;
+    }
+
+    List<Document> matches = new ArrayList<>();
+    Document facets = new Document();
+    for (SearchTier searchTier : restaurantTiers) {
+      Document match = buildRestaurantMatch(searchTier, query);
+      matches.add(match);
+      facets.append(searchTier.name(), Arrays.asList(new Document("$match", match),
+          new Document("$project", RESTAURANT_FIELDS)));
+    }
+    List<Document> results = run(RestaurantEntity.class, Arrays.asList(
+        new Document("$match", new Document("$or", matches)),
+        new Document("$facet", facets)));
+    Document result = results.isEmpty() ? null : results.get(0);
+    for (SearchTier searchTier : restaurantTiers) {
+      restaurantEntitiesByTier.put(searchTier, result == null ? new ArrayList<>()
+          : readRestaurantEntities(result.get(searchTier.name(), Collection.class)));
+    }
+    return restaurantEntitiesByTier;
+  }
+
+  private Document buildRestaurantMatch(SearchTier searchTier, String query) {
+    switch (searchTier) {
+      case NAME:
+        return new Document("name", regex(query));
+      case ATTRIBUTES:
+        return new Document("attributes", regex(query));
+      default:
+        throw new IllegalArgumentException("Not a restaurant search tier " + searchTier);
+    }
+  }
+
+  private List<Document> buildItemNameMatch(String query) {
+    // Menus with an item named exactly like the query first, as in MongoRestaurantSearcher.
+    Document exactItemName = new Document("$in", Arrays.asList(query,
+        new Document("$map", new Document("input", "$items.name")
+            .append("as", "itemName")
+            .append("in", new Document("$toLower", "$$itemName")))));
+    return Arrays.asList(
+        new Document("$match", new Document("items.name", regex(query))),
+        new Document("$project", new Document("restaurantId", 1)
+            .append("exactItemName", exactItemName)),
+        new Document("$sort", new Document("exactItemName", -1).append("_id", 1)));
+  }
+
+  private List<Document> buildItemAttributesMatch(String query) {
+    return Arrays.asList(
+        new Document("$match", new Document("items.attributes", regex(query))),
+        new Document("$project", new Document("restaurantId", 1)),
+        new Document("$sort", new Document("_id", 1)));
+  }
+
+  // Joins the menus left by the match to their restaurants, keeping their order.
+  private List<RestaurantEntity> aggregateMenus(List<Document> menuMatch) {
+    List<Document> pipeline = new ArrayList<>(menuMatch);
+    pipeline.add(new Document("$lookup", new Document("from",
+        mongoTemplate.getCollectionName(RestaurantEntity.class))
+        .append("localField", "restaurantId")
+        .append("foreignField", "restaurantId")
+        .append("as", "restaurant")));
+    pipeline.add(new Document("$unwind", "$restaurant"));
+    pipeline.add(new Document("$replaceRoot", new Document("newRoot", "$restaurant")));
+    pipeline.add(new Document("$project", RESTAURANT_FIELDS));
+    return readRestaurantEntities(run(MenuEntity.class, pipeline));
+  }
+
+  private List<Document> run(Class<?> entityClass, List<Document> pipeline) {
+    AggregateIterable<Document> aggregation = mongoTemplate.getCollection(
+        mongoTemplate.getCollectionName(entityClass)).aggregate(pipeline);
+    // MongoDB stops the aggregation when nobody waits for it any more. 0 would mean no limit.
+    Deadline deadline = Deadline.current();
+    if (deadline != null) {
+      aggregation.maxTime(Math.max(1, deadline.getRemaining(TimeUnit.MILLISECONDS)),
+          TimeUnit.MILLISECONDS);
+    }
+    return aggregation.into(new ArrayList<>());
+  }
+
+  private Document regex(String query) {
+    return new Document("$regex", query).append("$options", "i");
+  }
+
+  // A restaurant with several matching menus is kept once, at its first position.
+  private List<RestaurantEntity> readRestaurantEntities(Collection<?> documents) {
+    Map<String, RestaurantEntity> restaurantEntitiesById = new LinkedHashMap<>();
+    for (Object document : documents) {
+      RestaurantEntity restaurantEntity = mongoTemplate.getConverter()
+          .read(RestaurantEntity.class, (Document) document);
+      restaurantEntitiesById.putIfAbsent(restaurantEntity.getRestaurantId(), restaurantEntity);
+    }
+    return new ArrayList<>(restaurantEntitiesById.values());
+  }
+
+}
@@ -0,0 +1,169 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.repositoryservices;
+
+import ch.hsr.geohash.BoundingBox;
+import ch.hsr.geohash.GeoHash;
+import com.crio.qeats.models.RestaurantEntity;
+import com.crio.qeats.repositories.RestaurantRepository;
+import com.crio.qeats.utils.GeoRadiusFilter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.geo.Point;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.geo.GeoJsonPoint;
+import org.springframework.data.mongodb.core.geo.GeoJsonPolygon;
+import org.springframework.data.mongodb.core.index.GeoSpatialIndexType;
+import org.springframework.data.mongodb.core.index.GeospatialIndex;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.stereotype.Component;
+
+/**
+ * Lets MongoDB do the spatial filtering through the 2dsphere index on
+ * {@link RestaurantEntity#getLocation()}, so only the restaurants inside the serving radius are
+ * transferred and deserialized.
+ */
+@Component
+@ConditionalOnProperty(name = RestaurantLocator.STRATEGY_PROPERTY, havingValue = "mongo")
+@Log4j2
+public class MongoGeoRestaurantLocator implements RestaurantLocator {
+
+  private static final double EARTH_RADIUS_IN_KMS = 6371.0;
+  private static final int BACKFILL_BATCH_SIZE = 1000;
+
+  // Polygon edges are geodesics and not parallels, so the box is padded a little and the
+  // results are bucketed by their exact geohash.
+  private static final double CELL_BOX_PADDING_IN_DEGREES = 0.001;
+
+  @Autowired
+  private MongoTemplate mongoTemplate;
+
+  @Autowired
+  private RestaurantRepository restaurantRepository;
+
+  /**
+   * Ensures the 2dsphere index exists and fills in the location of restaurants which were
+   * written without one (eg: imported directly into the collection).
+   */
+  @EventListener(ApplicationReadyEvent.class)
+  @Order(Ordered.HIGHEST_PRECEDENCE)
+  public void ensureLocations() {
+    mongoTemplate.indexOps(RestaurantEntity.class)
+        .ensureIndex(new GeospatialIndex("location").typed(GeoSpatialIndexType.GEO_2DSPHERE));
+
+    Query withoutLocation = new Query(Criteria.where("location").exists(false)
+        .and("latitude").exists(true).and("longitude").exists(true));
+    withoutLocation.fields().include("latitude").include("longitude");
+
+    int backfilled = 0;
+    BulkOperations bulkOperations = null;
+    try (CloseableIterator<RestaurantEntity> restaurantEntities =
+        mongoTemplate.stream(withoutLocation, RestaurantEntity.class)) {
+      while (restaurantEntities.hasNext()) {
+        RestaurantEntity restaurantEntity = restaurantEntities.next();
+        if (bulkOperations == null) {
+          bulkOperations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED,
+              RestaurantEntity.class);
+        }
+        bulkOperations.updateOne(Query.query(Criteria.where("_id").is(restaurantEntity.getId())),
+            Update.update("location", new GeoJsonPoint(restaurantEntity.getLongitude(),
+                restaurantEntity.getLatitude())));
+        if (++backfilled % BACKFILL_BATCH_SIZE == 0) {
+          bulkOperations.execute();
+          bulkOperations = null;
+        }
+      }
+    }
+    if (bulkOperations != null) {
+      bulkOperations.execute();
+    }
+    if (backfilled > 0) {
+      log.info("Backfilled location of {} restaurants", backfilled);
+    }
+  }
+
+  @Override
+  public List<RestaurantEntity> findRestaurantEntitiesCloseBy(Double latitude, Double longitude,
+      Double servingRadiusInKms) {
+    List<RestaurantEntity> restaurantEntities = restaurantRepository.findByLocationWithinSphere(
+        longitude, latitude, servingRadiusInKms / EARTH_RADIUS_IN_KMS);
+
+    // Mongo's spherical model can disagree with GeoUtils right on the boundary.
+    GeoRadiusFilter servingArea = new GeoRadiusFilter(latitude, longitude, servingRadiusInKms);
+    return restaurantEntities.stream()
+        .filter(entity -> servingArea.contains(entity.getLatitude(), entity.getLongitude()))
+        .collect(Collectors.toList());
+  }
+
+  @Override
+  public Map<String, List<RestaurantEntity>> findRestaurantEntitiesInCells(
+      Collection<String> geoHashes) {
+    Map<String, List<RestaurantEntity>> restaurantEntitiesByCell = new HashMap<>();
+    if (geoHashes.isEmpty()) {
+      return restaurantEntitiesByCell;
+    }
+
+    BoundingBox unionBox = null;
+    for (String geoHash : geoHashes) {
+      restaurantEntitiesByCell.put(geoHash, new ArrayList<>());
+      BoundingBox cellBox = GeoHash.fromGeohashString(geoHash).getBoundingBox();
+      if (unionBox == null) {
+        unionBox = new BoundingBox(cellBox);
+      } else {
+        unionBox.expandToInclude(cellBox);
+      }
+    }
+
+    double minLat = Math.max(-90.0, unionBox.getMinLat() - CELL_BOX_PADDING_IN_DEGREES);
+    double maxLat = Math.min(90.0, unionBox.getMaxLat() + CELL_BOX_PADDING_IN_DEGREES);
+    double minLon = Math.max(-180.0, unionBox.getMinLon() - CELL_BOX_PADDING_IN_DEGREES);
+    double maxLon = Math.min(180.0, unionBox.getMaxLon() + CELL_BOX_PADDING_IN_DEGREES);
+    GeoJsonPolygon polygon = new GeoJsonPolygon(new Point(minLon, minLat),
+        new Point(maxLon, minLat), new Point(maxLon, maxLat), new Point(minLon, maxLat),
+        new Point(minLon, minLat));
+
+    List<RestaurantEntity> restaurantEntities = mongoTemplate.find(
+        new Query(Criteria.where("location").within(polygon)), RestaurantEntity.class);
+
+    // Each restaurant is encoded once per precision of the cells, and goes to its cell at that
+    // precision if it was asked for. Cells usually share RestaurantCellCache.CELL_PRECISION.
+    Set<Integer> precisions = new TreeSet<>();
+    for (String geoHash : geoHashes) {
+      precisions.add(geoHash.length());
+    }
+    for (RestaurantEntity restaurantEntity : restaurantEntities) {
+      for (int precision : precisions) {
+        List<RestaurantEntity> cellRestaurantEntities = restaurantEntitiesByCell.get(
+            GeoHash.geoHashStringWithCharacterPrecision(restaurantEntity.getLatitude(),
+                restaurantEntity.getLongitude(), precision));
+        if (cellRestaurantEntities != null) {
+          cellRestaurantEntities.add(restaurantEntity);
+        }
+      }
+    }
+
+    return restaurantEntitiesByCell;
+  }
+
+}
@@ -0,0 +1,97 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.repositoryservices;
+
+import com.crio.qeats.models.MenuMatch;
+import com.crio.qeats.models.RestaurantEntity;
+import com.crio.qeats.repositories.MenuRepository;
+import com.crio.qeats.repositories.RestaurantRepository;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Searches with case insensitive regex queries on the restaurants and menus collections.
+ * MongoDB can only answer those by scanning the collections. Menus are read projected down to
+ * their restaurant id and exactly matching item ({@link MenuMatch}).
+ */
+@Component
+@ConditionalOnProperty(name = RestaurantSearcher.STRATEGY_PROPERTY, havingValue = "mongo",
+    matchIfMissing = true)
+public class MongoRestaurantSearcher implements RestaurantSearcher {
+
+  @Autowired
+  private RestaurantRepository restaurantRepository;
+
+  @Autowired
+  private MenuRepository menuRepository;
+
+  @Override
+  public List<RestaurantEntity> findRestaurantEntitiesByName(String query) {
+    Optional<List<RestaurantEntity>> restaurantEntitiesWithMatchingNameOptional =
+        restaurantRepository.findRestaurantsByNameExact(query);
+    if (restaurantEntitiesWithMatchingNameOptional.isEmpty()) {
+      return new ArrayList<>();
+    }
+    return restaurantEntitiesWithMatchingNameOptional.get().stream()
+        .sorted((r1, r2) -> {
+          boolean exactNameMatchR1 = r1.getName().equalsIgnoreCase(query);
+          boolean exactNameMatchR2 = r2.getName().equalsIgnoreCase(query);
+
+          return Boolean.compare(exactNameMatchR2, exactNameMatchR1);
+        })
+        .collect(Collectors.toList());
+  }
+
+  @Override
+  public List<RestaurantEntity> findRestaurantEntitiesByAttributes(String query) {
+    return restaurantRepository.findByAttributesContainingIgnoreCase(query);
+  }
+
+  @Override
+  public List<RestaurantEntity> findRestaurantEntitiesByItemName(String query) {
+    //restaurants serving an item named exactly like the query first
+    List<MenuMatch> menuMatchesWithMatchingItemName = menuRepository.findMenuMatchesByItemsName(
+        query, "^" + Pattern.quote(query) + "$");
+    List<String> orderedRestaurantIds = menuMatchesWithMatchingItemName.stream()
+        .sorted(Comparator.comparing(menuMatch -> !menuMatch.isExactMatch()))
+        .map(MenuMatch::getRestaurantId)
+        .distinct()
+        .collect(Collectors.toList());
+    //getting restaurants corresponding to founded matching menus
+    List<RestaurantEntity> restaurantEntitiesWithMatchingItemName =
+        restaurantRepository.findByRestaurantIdIn(orderedRestaurantIds);
+    //ordering restaurant entity in same order as menu entity (with exact matches first)
+    Map<String, RestaurantEntity> byIdMap = restaurantEntitiesWithMatchingItemName.stream()
+        .collect(Collectors.toMap(RestaurantEntity::getRestaurantId, r -> r));
+    return orderedRestaurantIds.stream()
+        .map(byIdMap::get)
+        .filter(Objects::nonNull)
+        .collect(Collectors.toList());
+  }
+
+  @Override
+  public List<RestaurantEntity> findRestaurantEntitiesByItemAttributes(String query) {
+    List<MenuMatch> menuMatchesWithMatchingItemAttribute =
+        menuRepository.findMenuMatchesByItemsAttributes(query);
+    List<String> restaurantIds = menuMatchesWithMatchingItemAttribute.stream()
+        .map(MenuMatch::getRestaurantId)
+        .distinct()
+        .collect(Collectors.toList());
+    //getting restaurants corresponding to founded matching menus
+    return restaurantRepository.findByRestaurantIdIn(restaurantIds);
+  }
+
+}
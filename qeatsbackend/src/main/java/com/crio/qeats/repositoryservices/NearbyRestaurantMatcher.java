@@ -0,0 +1,108 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.repositoryservices;
+
+import com.crio.qeats.dto.Item;
+import com.crio.qeats.models.MenuEntity;
+import com.crio.qeats.models.RestaurantEntity;
+import com.crio.qeats.repositories.MenuRepository;
+import com.crio.qeats.repositoryservices.RestaurantSearchCache.SearchTier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Matches a search against a given set of restaurants, typically the ones around the user,
+ * instead of against every restaurant. The work is then bounded by the local density of
+ * restaurants rather than by how common the searched term is.
+ *   - Names and attributes are matched in memory, menus with one query restricted to the
+ *     candidate restaurant ids.
+ *   - Values are matched {@link RestaurantSearchCache#normalize(String)}d and literally, as by
+ *     {@link RestaurantSearchIndex}.
+ *   - Matches come in restaurant id order, exact name or item name matches first.
+ */
+@Component
+public class NearbyRestaurantMatcher {
+
+  @Autowired
+  private MenuRepository menuRepository;
+
+  /**
+   * Get the candidates matching the query, keyed by the tier they matched.
+   * @param query a {@link RestaurantSearchCache#normalize(String)}d search string
+   */
+  public Map<SearchTier, List<RestaurantEntity>> findMatches(String query,
+      Collection<RestaurantEntity> candidates) {
+    Map<String, RestaurantEntity> candidatesById = new LinkedHashMap<>();
+    candidates.stream()
+        .sorted(Comparator.comparing(RestaurantEntity::getRestaurantId))
+        .forEach(entity -> candidatesById.putIfAbsent(entity.getRestaurantId(), entity));
+
+    Map<SearchTier, List<RestaurantEntity>> restaurantEntitiesByTier =
+        new EnumMap<>(SearchTier.class);
+    restaurantEntitiesByTier.put(SearchTier.NAME, candidatesById.values().stream()
+        .filter(entity -> contains(entity.getName(), query))
+        .sorted(Comparator.comparing(entity -> !equal(entity.getName(), query)))
+        .collect(Collectors.toList()));
+    restaurantEntitiesByTier.put(SearchTier.ATTRIBUTES, candidatesById.values().stream()
+        .filter(entity -> anyContains(entity.getAttributes(), query))
+        .collect(Collectors.toList()));
+
+    List<MenuEntity> menuEntities = candidatesById.isEmpty() ? new ArrayList<>()
+        : new ArrayList<>(menuRepository.findMenusByRestaurantIdInAndItemsMatching(
+            candidatesById.keySet(), Pattern.quote(query)));
+    menuEntities.sort(Comparator.comparing(MenuEntity::getRestaurantId));
+    restaurantEntitiesByTier.put(SearchTier.ITEM_NAME, toRestaurantEntities(
+        menuEntities.stream()
+            .filter(hasItem(item -> contains(item.getName(), query)))
+            .sorted(Comparator.comparing(menu -> !hasItem(item -> equal(item.getName(), query))
+                .test(menu))),
+        candidatesById));
+    restaurantEntitiesByTier.put(SearchTier.ITEM_ATTRIBUTES, toRestaurantEntities(
+        menuEntities.stream().filter(hasItem(item -> anyContains(item.getAttributes(), query))),
+        candidatesById));
+    return restaurantEntitiesByTier;
+  }
+
+  private static List<RestaurantEntity> toRestaurantEntities(Stream<MenuEntity> menuEntities,
+      Map<String, RestaurantEntity> candidatesById) {
+    return menuEntities
+        .map(MenuEntity::getRestaurantId)
+        .distinct()
+        .map(candidatesById::get)
+        .filter(Objects::nonNull)
+        .collect(Collectors.toList());
+  }
+
+  private static Predicate<MenuEntity> hasItem(Predicate<Item> predicate) {
+    return menu -> menu.getItems() != null && menu.getItems().stream().anyMatch(predicate);
+  }
+
+  private static boolean contains(String value, String query) {
+    return value != null && RestaurantSearchCache.normalize(value).contains(query);
+  }
+
+  private static boolean equal(String value, String query) {
+    return value != null && RestaurantSearchCache.normalize(value).equals(query);
+  }
+
+  private static boolean anyContains(List<String> values, String query) {
+    return values != null && values.stream().anyMatch(value -> contains(value, query));
+  }
+
+}
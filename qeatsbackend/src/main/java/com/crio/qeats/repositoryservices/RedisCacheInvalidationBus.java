@@ -0,0 +1,148 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.repositoryservices;
+
+import com.crio.qeats.configs.RedisConfiguration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPubSub;
+import redis.clients.jedis.Pipeline;
+
+/**
+ * Tells every node which Redis keys were rewritten so they can drop their in-process copies.
+ *   - Messages on {@link RedisConfiguration#CACHE_INVALIDATION_CHANNEL} are
+ *     "&lt;node id&gt; &lt;key&gt; &lt;key&gt;...", a node ignores its own messages.
+ *     {@link RedisConfiguration#CACHE_INVALIDATE_ALL} drops everything.
+ *   - With qeats.cache.l1.keyspace-events the expired and evicted keyspace events are
+ *     followed too. They have to be enabled on the server (notify-keyspace-events Exe).
+ */
+@Component
+@Log4j2
+public class RedisCacheInvalidationBus {
+
+  private static final long RECONNECT_DELAY_IN_MILLIS = 5000;
+
+  private final String nodeId = UUID.randomUUID().toString();
+  private final List<Consumer<String>> listeners = new CopyOnWriteArrayList<>();
+
+  @Autowired
+  private RedisConfiguration redisConfiguration;
+
+  @Value("${qeats.cache.l1.keyspace-events:false}")
+  private boolean followKeyspaceEvents;
+
+  private volatile boolean running;
+  private volatile JedisPubSub pubSub;
+  private Thread subscriberThread;
+
+  public String getNodeId() {
+    return nodeId;
+  }
+
+  /**
+   * Registers a listener called with each invalidated key, or with
+   * {@link RedisConfiguration#CACHE_INVALIDATE_ALL}.
+   */
+  public void addListener(Consumer<String> listener) {
+    listeners.add(listener);
+  }
+
+  /**
+   * Queues the invalidation of the given keys on a pipeline which is also writing them.
+   */
+  public void publishInvalidation(Pipeline pipeline, List<String> keys) {
+    if (!keys.isEmpty()) {
+      pipeline.publish(RedisConfiguration.CACHE_INVALIDATION_CHANNEL,
+          nodeId + " " + String.join(" ", keys));
+    }
+  }
+
+  @PostConstruct
+  public void start() {
+    running = true;
+    subscriberThread = new Thread(this::subscribeUntilStopped, "cache-invalidation-subscriber");
+    subscriberThread.setDaemon(true);
+    subscriberThread.start();
+  }
+
+  @PreDestroy
+  public void stop() {
+    running = false;
+    JedisPubSub currentPubSub = pubSub;
+    if (currentPubSub != null && currentPubSub.isSubscribed()) {
+      currentPubSub.unsubscribe();
+      currentPubSub.punsubscribe();
+    }
+    subscriberThread.interrupt();
+  }
+
+  private void subscribeUntilStopped() {
+    while (running) {
+      try (Jedis jedis = new Jedis(redisConfiguration.getRedisHost(),
+          redisConfiguration.getRedisPort(), redisConfiguration.getConnectTimeoutInMillis())) {
+        pubSub = new InvalidationPubSub();
+        // Blocks until unsubscribed or the connection drops.
+        jedis.subscribe(pubSub, RedisConfiguration.CACHE_INVALIDATION_CHANNEL);
+      } catch (Exception e) {
+        if (running) {
+          log.warn("Cache invalidation subscription lost, retrying: {}", e.getMessage());
+        }
+      }
+      // Anything could have changed while we were not listening.
+      notifyListeners(RedisConfiguration.CACHE_INVALIDATE_ALL);
+      try {
+        Thread.sleep(RECONNECT_DELAY_IN_MILLIS);
+      } catch (InterruptedException e) {
+        return;
+      }
+    }
+  }
+
+  private void notifyListeners(String key) {
+    for (Consumer<String> listener : listeners) {
+      listener.accept(key);
+    }
+  }
+
+  private class InvalidationPubSub extends JedisPubSub {
+
+    @Override
+    public void onSubscribe(String channel, int subscribedChannels) {
+      if (followKeyspaceEvents) {
+        psubscribe("__keyevent@*__:expired", "__keyevent@*__:evicted");
+      }
+    }
+
+    @Override
+    public void onMessage(String channel, String message) {
+      if (RedisConfiguration.CACHE_INVALIDATE_ALL.equals(message)) {
+        notifyListeners(RedisConfiguration.CACHE_INVALIDATE_ALL);
+        return;
+      }
+      String[] originAndKeys = message.split(" ");
+      if (!nodeId.equals(originAndKeys[0])) {
+        Arrays.stream(originAndKeys, 1, originAndKeys.length)
+            .forEach(RedisCacheInvalidationBus.this::notifyListeners);
+      }
+    }
+
+    @Override
+    public void onPMessage(String pattern, String channel, String key) {
+      notifyListeners(key);
+    }
+  }
+}
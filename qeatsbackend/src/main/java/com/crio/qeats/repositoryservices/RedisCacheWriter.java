@@ -0,0 +1,220 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.repositoryservices;
+
+import com.crio.qeats.configs.RedisCircuitBreaker;
+import com.crio.qeats.configs.RedisConfiguration;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.exceptions.JedisException;
+import redis.clients.util.SafeEncoder;
+
+/**
+ * Writes cache fills to Redis in the background, so that requests which missed the cache do
+ * not wait for the encoding and the write of what they loaded.
+ *   - Fills are queued, up to qeats.cache.write-behind.queue-capacity of them. When the queue
+ *     is full fills are dropped rather than blocking the request; the entries are simply
+ *     loaded again by a later miss. Dropped fills are counted in qeats.cache.write.dropped.
+ *   - A single thread takes up to qeats.cache.write-behind.batch-size fills at a time, encodes
+ *     them and writes them, along with their invalidation message, in one pipeline.
+ */
+@Component
+@Log4j2
+public class RedisCacheWriter {
+
+  private static final long POLL_INTERVAL_IN_MILLIS = 100;
+  private static final long STOP_TIMEOUT_IN_MILLIS = 2000;
+
+  @Autowired
+  private RedisConfiguration redisConfiguration;
+
+  @Autowired
+  private RedisCircuitBreaker redisCircuitBreaker;
+
+  @Autowired
+  private CacheEntrySerializer cacheEntrySerializer;
+
+  @Autowired
+  private RedisCacheInvalidationBus redisCacheInvalidationBus;
+
+  @Autowired
+  private MeterRegistry meterRegistry;
+
+  @Value("${qeats.cache.write-behind.queue-capacity:1000}")
+  private int queueCapacity;
+
+  @Value("${qeats.cache.write-behind.batch-size:64}")
+  private int batchSize;
+
+  private BlockingQueue<Fill> queue;
+  // Fills submitted and not yet written or dropped.
+  private final AtomicInteger pendingFills = new AtomicInteger();
+  private Counter droppedFills;
+
+  private volatile boolean running;
+  private Thread writerThread;
+
+  private static final class Fill {
+    private final Map<String, ?> valuesByKey;
+    private final int expiryInSeconds;
+    private final long refreshAtMillis;
+    private final Consumer<Pipeline> afterWrite;
+
+    private Fill(Map<String, ?> valuesByKey, int expiryInSeconds, long refreshAtMillis,
+        Consumer<Pipeline> afterWrite) {
+      this.valuesByKey = valuesByKey;
+      this.expiryInSeconds = expiryInSeconds;
+      this.refreshAtMillis = refreshAtMillis;
+      this.afterWrite = afterWrite;
+    }
+  }
+
+  @PostConstruct
+  public void start() {
+    queue = new ArrayBlockingQueue<>(queueCapacity);
+    droppedFills = Counter.builder("qeats.cache.write.dropped")
+        .description("Cache fills dropped because the write queue was full")
+        .register(meterRegistry);
+    Gauge.builder("qeats.cache.write.queued", this, writer -> writer.queue.size())
+        .description("Cache fills waiting to be written")
+        .register(meterRegistry);
+
+    running = true;
+    writerThread = new Thread(this::writeUntilStopped, "cache-writer");
+    writerThread.setDaemon(true);
+    writerThread.start();
+  }
+
+  /**
+   * Writes the remaining fills, for at most a couple of seconds.
+   */
+  @PreDestroy
+  public void stop() throws InterruptedException {
+    running = false;
+    writerThread.join(STOP_TIMEOUT_IN_MILLIS);
+  }
+
+  /**
+   * Queues entries to be written.
+   * @param valuesByKey values to encode and write, keyed by cache key
+   * @param refreshAtMillis see {@link CacheEntrySerializer#serialize(Object, long)}
+   * @param afterWrite queues further commands to send with the writes, eg: lock releases
+   * @return false if the fill was dropped because the queue is full
+   */
+  public boolean submit(Map<String, ?> valuesByKey, int expiryInSeconds, long refreshAtMillis,
+      Consumer<Pipeline> afterWrite) {
+    pendingFills.incrementAndGet();
+    if (!queue.offer(new Fill(valuesByKey, expiryInSeconds, refreshAtMillis, afterWrite))) {
+      pendingFills.decrementAndGet();
+      droppedFills.increment();
+      return false;
+    }
+    return true;
+  }
+
+  public boolean submit(Map<String, ?> valuesByKey, int expiryInSeconds) {
+    return submit(valuesByKey, expiryInSeconds, 0, pipeline -> { });
+  }
+
+  /**
+   * Waits until the fills submitted so far have been written or given up on.
+   * @return false if they were not all written within the timeout
+   */
+  public boolean awaitWrites(long timeoutInMillis) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + timeoutInMillis;
+    while (pendingFills.get() > 0) {
+      if (System.currentTimeMillis() >= deadline) {
+        return false;
+      }
+      Thread.sleep(1);
+    }
+    return true;
+  }
+
+  private void writeUntilStopped() {
+    List<Fill> batch = new ArrayList<>(batchSize);
+    while (running || !queue.isEmpty()) {
+      try {
+        Fill first = queue.poll(POLL_INTERVAL_IN_MILLIS, TimeUnit.MILLISECONDS);
+        if (first == null) {
+          continue;
+        }
+        batch.add(first);
+        queue.drainTo(batch, batchSize - 1);
+        write(batch);
+      } catch (InterruptedException e) {
+        return;
+      } catch (Exception e) {
+        log.warn("Writing {} cache fills failed: {}", batch.size(), e.getMessage());
+      } finally {
+        pendingFills.addAndGet(-batch.size());
+        batch.clear();
+      }
+    }
+  }
+
+  private void write(List<Fill> batch) {
+    List<String> writtenKeys = new ArrayList<>();
+    List<byte[]> encodedKeys = new ArrayList<>();
+    List<byte[]> encodedEntries = new ArrayList<>();
+    List<Integer> expiries = new ArrayList<>();
+    for (Fill fill : batch) {
+      for (Map.Entry<String, ?> keyAndValue : fill.valuesByKey.entrySet()) {
+        try {
+          encodedEntries.add(cacheEntrySerializer.serialize(keyAndValue.getValue(),
+              fill.refreshAtMillis));
+        } catch (IOException e) {
+          log.warn("Not caching {}, it could not be encoded: {}", keyAndValue.getKey(),
+              e.getMessage());
+          continue;
+        }
+        writtenKeys.add(keyAndValue.getKey());
+        encodedKeys.add(SafeEncoder.encode(keyAndValue.getKey()));
+        expiries.add(fill.expiryInSeconds);
+      }
+    }
+
+    if (!redisConfiguration.isCacheAvailable()) {
+      // Later misses fill these again once Redis is back.
+      return;
+    }
+    try (Jedis jedis = redisConfiguration.getJedisPool().getResource()) {
+      redisConfiguration.pipelined(jedis, "cache-write", pipeline -> {
+        for (int i = 0; i < encodedKeys.size(); i++) {
+          pipeline.setex(encodedKeys.get(i), expiries.get(i), encodedEntries.get(i));
+        }
+        redisCacheInvalidationBus.publishInvalidation(pipeline, writtenKeys);
+        batch.forEach(fill -> fill.afterWrite.accept(pipeline));
+        return null;
+      });
+    } catch (JedisException e) {
+      redisCircuitBreaker.recordFailure();
+      log.warn("Writing {} cache entries failed: {}", writtenKeys.size(), e.getMessage());
+      return;
+    }
+    redisCircuitBreaker.recordSuccess();
+  }
+
+}
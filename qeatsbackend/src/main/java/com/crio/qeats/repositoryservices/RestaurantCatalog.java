@@ -0,0 +1,98 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.repositoryservices;
+
+import com.crio.qeats.models.MenuEntity;
+import com.crio.qeats.models.RestaurantEntity;
+import com.crio.qeats.repositories.MenuRepository;
+import com.crio.qeats.repositories.RestaurantRepository;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Loads the restaurants and menus collections for the in-memory indexes built from them
+ * ({@link RestaurantGeoIndex}, {@link RestaurantSearchIndex}, {@link FuzzyRestaurantIndex},
+ * {@link AutocompleteIndex}).
+ *   - Loaded once the application is ready, and again every qeats.catalog.refresh-interval-ms.
+ *     Each load is read once and handed to every {@link Listener}, so the collections are
+ *     scanned once per refresh and the indexes share the same entities.
+ *   - The lists are only referenced while the listeners build from them.
+ */
+@Component
+@Log4j2
+public class RestaurantCatalog {
+
+  /**
+   * Something built from the catalog, replaced on every load.
+   */
+  public interface Listener {
+
+    /**
+     * Called with the restaurants and menus just loaded, which must not be modified.
+     */
+    void onCatalogLoaded(List<RestaurantEntity> restaurantEntities,
+        List<MenuEntity> menuEntities);
+  }
+
+  @Autowired
+  private RestaurantRepository restaurantRepository;
+
+  @Autowired
+  private MenuRepository menuRepository;
+
+  @Autowired(required = false)
+  private List<Listener> listeners = new ArrayList<>();
+
+  @EventListener(ApplicationReadyEvent.class)
+  @Order(Ordered.HIGHEST_PRECEDENCE)
+  public void onApplicationReady() {
+    load();
+  }
+
+  @Scheduled(fixedDelayString = "${qeats.catalog.refresh-interval-ms:300000}",
+      initialDelayString = "${qeats.catalog.refresh-interval-ms:300000}")
+  public void scheduledLoad() {
+    load();
+  }
+
+  /**
+   * Reads the restaurants and menus currently in the database and hands them to the
+   * listeners. When reading fails, the listeners keep what they built from the previous load.
+   */
+  public void load() {
+    List<RestaurantEntity> restaurantEntities;
+    List<MenuEntity> menuEntities;
+    try {
+      restaurantEntities = Collections.unmodifiableList(restaurantRepository.findAll());
+      menuEntities = Collections.unmodifiableList(menuRepository.findAll());
+    } catch (Exception e) {
+      log.error("Loading the restaurant catalog failed", e);
+      return;
+    }
+    log.info("Restaurant catalog loaded with {} restaurants and {} menus",
+        restaurantEntities.size(), menuEntities.size());
+
+    for (Listener listener : listeners) {
+      try {
+        listener.onCatalogLoaded(restaurantEntities, menuEntities);
+      } catch (Exception e) {
+        log.error("Building {} from the restaurant catalog failed",
+            listener.getClass().getSimpleName(), e);
+      }
+    }
+  }
+
+}
@@ -0,0 +1,448 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.repositoryservices;
+
+import com.crio.qeats.configs.RedisCircuitBreaker;
+import com.crio.qeats.configs.RedisConfiguration;
+import com.crio.qeats.models.RestaurantEntity;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import javax.annotation.PostConstruct;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.exceptions.JedisException;
+import redis.clients.util.SafeEncoder;
+
+/**
+ * Redis cache of all the restaurants inside fixed geohash cells.
+ *   - Entries do not depend on the serving radius or on where in the cell the user is, so
+ *     every request overlapping a cell (peak or normal hours) reuses the same entry.
+ *   - Entries are encoded by {@link CacheEntrySerializer}.
+ *   - All the cells of a request are read with one MGET. Missing cells are returned as soon
+ *     as they are loaded and written back by {@link RedisCacheWriter}. Connections are only
+ *     borrowed for each round trip, never while loading or waiting for another node.
+ *   - Concurrent misses on a cell, whether on this node or across nodes, are loaded only once.
+ *   - Entries older than qeats.cache.soft-ttl-seconds are still served but reloaded in the
+ *     background, so that requests rarely wait for the hard expiry to be refilled.
+ *   - While {@link RedisCircuitBreaker} is open, cells are loaded straight from the locator.
+ *   - Hot cells are also kept deserialized in process, bounded by the number of restaurants
+ *     they hold. Rewritten keys are announced through {@link RedisCacheInvalidationBus} so
+ *     that other nodes drop their copies, and the short local expiry bounds any message lost
+ *     in between.
+ */
+@Component
+@Log4j2
+public class RestaurantCellCache {
+
+  // ~4.9km x 4.9km cells, a 3-5km serving radius is covered by 9 to 16 of them.
+  public static final int CELL_PRECISION = 5;
+
+  private static final String KEY_PREFIX = "cell:";
+  private static final String LOCK_KEY_PREFIX = "lock:";
+  private static final long LOCK_POLL_INTERVAL_IN_MILLIS = 50;
+  private static final String RELEASE_LOCK_SCRIPT =
+      "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) end";
+  private static final TypeReference<List<RestaurantEntity>> CELL_TYPE =
+      new TypeReference<List<RestaurantEntity>>() {};
+
+  @Autowired
+  private RedisConfiguration redisConfiguration;
+
+  @Autowired
+  private CacheEntrySerializer cacheEntrySerializer;
+
+  @Autowired
+  private RestaurantLocator restaurantLocator;
+
+  @Autowired
+  private RedisCacheInvalidationBus redisCacheInvalidationBus;
+
+  @Autowired
+  private RedisCircuitBreaker redisCircuitBreaker;
+
+  @Autowired
+  private HotKeyTracker hotKeyTracker;
+
+  @Autowired
+  private RedisCacheWriter redisCacheWriter;
+
+  @Value("${qeats.cache.l1.max-restaurants:100000}")
+  private long localMaxRestaurants;
+
+  @Value("${qeats.cache.l1.expiry-seconds:60}")
+  private long localExpiryInSeconds;
+
+  @Autowired
+  @Qualifier("cacheRefreshExecutor")
+  private Executor cacheRefreshExecutor;
+
+  // Zero disables background refreshes.
+  @Value("${qeats.cache.soft-ttl-seconds:600}")
+  private long softTtlInSeconds;
+
+  // Also how long other requests wait for the node or thread filling a cell.
+  @Value("${qeats.cache.fill-lock-ms:3000}")
+  private int fillLockInMillis;
+
+  // Fills running on this node, keyed by cell.
+  private final ConcurrentMap<String, CompletableFuture<List<RestaurantEntity>>> inFlightFills =
+      new ConcurrentHashMap<>();
+
+  // Keyed by cache key, values are shared between requests and must not be modified.
+  private Cache<String, List<RestaurantEntity>> localCells;
+
+  @PostConstruct
+  public void initLocalCache() {
+    localCells = CacheBuilder.newBuilder()
+        .maximumWeight(localMaxRestaurants)
+        .weigher((String key, List<RestaurantEntity> cell) -> Math.max(1, cell.size()))
+        .expireAfterWrite(localExpiryInSeconds, TimeUnit.SECONDS)
+        .recordStats()
+        .build();
+    redisCacheInvalidationBus.addListener(key -> {
+      if (RedisConfiguration.CACHE_INVALIDATE_ALL.equals(key)) {
+        localCells.invalidateAll();
+      } else {
+        localCells.invalidate(key);
+      }
+    });
+  }
+
+  public CacheStats getLocalStats() {
+    return localCells.stats();
+  }
+
+  public static String getCacheKey(String geoHash) {
+    return KEY_PREFIX + geoHash;
+  }
+
+  /**
+   * Get the restaurants inside each of the given cells, from the cache or else from the
+   * configured {@link RestaurantLocator}.
+   * @param geoHashes cells of {@link #CELL_PRECISION} characters
+   * @return restaurants keyed by cell, every requested cell is present
+   * @throws Exception if the cache cannot be read or written
+   */
+  public Map<String, List<RestaurantEntity>> getRestaurantEntitiesInCells(List<String> geoHashes)
+      throws Exception {
+    Map<String, List<RestaurantEntity>> restaurantEntitiesByCell = new HashMap<>();
+    if (geoHashes.isEmpty()) {
+      return restaurantEntitiesByCell;
+    }
+    hotKeyTracker.recordCells(geoHashes);
+
+    List<String> remoteGeoHashes = new ArrayList<>();
+    for (String geoHash : geoHashes) {
+      List<RestaurantEntity> localCell = localCells.getIfPresent(getCacheKey(geoHash));
+      if (localCell == null) {
+        remoteGeoHashes.add(geoHash);
+      } else {
+        restaurantEntitiesByCell.put(geoHash, localCell);
+      }
+    }
+    if (remoteGeoHashes.isEmpty()) {
+      return restaurantEntitiesByCell;
+    }
+
+    if (!redisConfiguration.isCacheAvailable()) {
+      restaurantEntitiesByCell.putAll(loadCellsWithoutRedis(remoteGeoHashes));
+      return restaurantEntitiesByCell;
+    }
+
+    Map<String, List<RestaurantEntity>> staleCells = new HashMap<>();
+    try {
+      Map<String, CacheEntry<List<RestaurantEntity>>> remoteCells = readCells(remoteGeoHashes);
+      long now = System.currentTimeMillis();
+      remoteCells.forEach((geoHash, remoteCell) -> {
+        restaurantEntitiesByCell.put(geoHash, remoteCell.getValue());
+        if (remoteCell.isStale(now)) {
+          staleCells.put(geoHash, remoteCell.getValue());
+        }
+      });
+
+      List<String> missingGeoHashes = remoteGeoHashes.stream()
+          .filter(geoHash -> !remoteCells.containsKey(geoHash))
+          .collect(Collectors.toList());
+      if (!missingGeoHashes.isEmpty()) {
+        restaurantEntitiesByCell.putAll(fillCells(missingGeoHashes));
+      }
+    } catch (JedisException e) {
+      redisCircuitBreaker.recordFailure();
+      log.warn("Reading cells from Redis failed, loading them directly: {}", e.getMessage());
+      restaurantEntitiesByCell.putAll(loadCellsWithoutRedis(remoteGeoHashes));
+      return restaurantEntitiesByCell;
+    }
+    redisCircuitBreaker.recordSuccess();
+    if (!staleCells.isEmpty()) {
+      scheduleRefresh(staleCells);
+    }
+
+    return restaurantEntitiesByCell;
+  }
+
+  /**
+   * Reads the given cells from Redis with one MGET, keeping them locally as well.
+   * @return the cells which were found, corrupt entries are left out to be refilled
+   */
+  private Map<String, CacheEntry<List<RestaurantEntity>>> readCells(List<String> geoHashes) {
+    String[] keys = geoHashes.stream().map(RestaurantCellCache::getCacheKey)
+        .toArray(String[]::new);
+    List<byte[]> fetchedEntries;
+    try (Jedis jedis = redisConfiguration.getJedisPool().getResource()) {
+      fetchedEntries = redisConfiguration.timeCommand("mget",
+          () -> jedis.mget(SafeEncoder.encodeMany(keys)));
+    }
+
+    Map<String, CacheEntry<List<RestaurantEntity>>> cacheEntriesByCell = new HashMap<>();
+    for (int i = 0; i < geoHashes.size(); i++) {
+      byte[] fetchedEntry = fetchedEntries.get(i);
+      CacheEntry<List<RestaurantEntity>> cacheEntry = null;
+      try {
+        cacheEntry = fetchedEntry == null ? null
+            : cacheEntrySerializer.deserialize(fetchedEntry, CELL_TYPE);
+      } catch (IOException e) {
+        // Read as a miss, so that the fill overwrites it.
+        log.warn("Ignoring corrupt cache entry {}: {}", keys[i], e.getMessage());
+      }
+      if (cacheEntry != null) {
+        cacheEntry = new CacheEntry<>(Collections.unmodifiableList(cacheEntry.getValue()),
+            cacheEntry.getRefreshAtMillis());
+        localCells.put(keys[i], cacheEntry.getValue());
+        cacheEntriesByCell.put(geoHashes.get(i), cacheEntry);
+      }
+    }
+    return cacheEntriesByCell;
+  }
+
+  /**
+   * Fills cells missing from Redis, joining fills of the same cells already running on this
+   * node instead of starting another one.
+   */
+  private Map<String, List<RestaurantEntity>> fillCells(List<String> missingGeoHashes)
+      throws Exception {
+    Map<String, CompletableFuture<List<RestaurantEntity>>> ownFills = new LinkedHashMap<>();
+    Map<String, CompletableFuture<List<RestaurantEntity>>> joinedFills = new LinkedHashMap<>();
+    claimFills(missingGeoHashes, ownFills, joinedFills);
+
+    Map<String, List<RestaurantEntity>> restaurantEntitiesByCell = new HashMap<>();
+    if (!ownFills.isEmpty()) {
+      restaurantEntitiesByCell.putAll(runFills(ownFills, Collections.emptyMap()));
+    }
+    for (Map.Entry<String, CompletableFuture<List<RestaurantEntity>>> joinedFill
+        : joinedFills.entrySet()) {
+      try {
+        restaurantEntitiesByCell.put(joinedFill.getKey(),
+            joinedFill.getValue().get(fillLockInMillis, TimeUnit.MILLISECONDS));
+      } catch (ExecutionException e) {
+        // Rethrown as is, so that a Redis failure of the joined fill is handled like our own.
+        throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+      }
+    }
+    return restaurantEntitiesByCell;
+  }
+
+  /**
+   * Reloads stale cells on the refresh executor, unless they are already being filled.
+   */
+  private void scheduleRefresh(Map<String, List<RestaurantEntity>> staleCells) {
+    Map<String, CompletableFuture<List<RestaurantEntity>>> ownFills = new LinkedHashMap<>();
+    claimFills(staleCells.keySet(), ownFills, new HashMap<>());
+    if (ownFills.isEmpty()) {
+      return;
+    }
+
+    Runnable refresh = () -> {
+      try {
+        runFills(ownFills, staleCells);
+      } catch (JedisException e) {
+        redisCircuitBreaker.recordFailure();
+        log.warn("Refreshing cells {} failed: {}", ownFills.keySet(), e.getMessage());
+      } catch (Exception e) {
+        log.warn("Refreshing cells {} failed: {}", ownFills.keySet(), e.getMessage());
+      } finally {
+        releaseFills(ownFills, staleCells);
+      }
+    };
+    try {
+      cacheRefreshExecutor.execute(refresh);
+    } catch (RejectedExecutionException e) {
+      // A later request will retry once the executor has caught up.
+      releaseFills(ownFills, staleCells);
+    }
+  }
+
+  /**
+   * Loads cells straight from the {@link RestaurantLocator} while Redis is unavailable. They
+   * are only kept locally, for the short local expiry.
+   */
+  private Map<String, List<RestaurantEntity>> loadCellsWithoutRedis(List<String> geoHashes) {
+    Map<String, List<RestaurantEntity>> loadedCells = redisCircuitBreaker.callFallback(
+        () -> restaurantLocator.findRestaurantEntitiesInCells(geoHashes));
+
+    Map<String, List<RestaurantEntity>> restaurantEntitiesByCell = new HashMap<>();
+    for (String geoHash : geoHashes) {
+      List<RestaurantEntity> restaurantEntities =
+          Collections.unmodifiableList(loadedCells.get(geoHash));
+      localCells.put(getCacheKey(geoHash), restaurantEntities);
+      restaurantEntitiesByCell.put(geoHash, restaurantEntities);
+    }
+    return restaurantEntitiesByCell;
+  }
+
+  private void claimFills(Collection<String> geoHashes,
+      Map<String, CompletableFuture<List<RestaurantEntity>>> ownFills,
+      Map<String, CompletableFuture<List<RestaurantEntity>>> joinedFills) {
+    for (String geoHash : geoHashes) {
+      CompletableFuture<List<RestaurantEntity>> fill = new CompletableFuture<>();
+      CompletableFuture<List<RestaurantEntity>> runningFill =
+          inFlightFills.putIfAbsent(geoHash, fill);
+      if (runningFill == null) {
+        ownFills.put(geoHash, fill);
+      } else {
+        joinedFills.put(geoHash, runningFill);
+      }
+    }
+  }
+
+  /**
+   * Loads the cells of fills claimed by the calling thread and completes them.
+   * @param staleCells current values of cells being refreshed, see {@link #loadCells}
+   */
+  private Map<String, List<RestaurantEntity>> runFills(
+      Map<String, CompletableFuture<List<RestaurantEntity>>> ownFills,
+      Map<String, List<RestaurantEntity>> staleCells) throws Exception {
+    try {
+      Map<String, List<RestaurantEntity>> loadedCells =
+          loadCells(new ArrayList<>(ownFills.keySet()), staleCells);
+      ownFills.forEach((geoHash, fill) -> fill.complete(loadedCells.get(geoHash)));
+      return loadedCells;
+    } catch (Exception e) {
+      ownFills.values().forEach(fill -> fill.completeExceptionally(e));
+      throw e;
+    } finally {
+      ownFills.forEach(inFlightFills::remove);
+    }
+  }
+
+  // Completes fills which did not run with the values they were meant to replace.
+  private void releaseFills(Map<String, CompletableFuture<List<RestaurantEntity>>> ownFills,
+      Map<String, List<RestaurantEntity>> staleCells) {
+    ownFills.forEach((geoHash, fill) -> fill.complete(staleCells.get(geoHash)));
+    ownFills.forEach(inFlightFills::remove);
+  }
+
+  /**
+   * Loads cells from the {@link RestaurantLocator} and writes them back.
+   *   - A short lock per cell lets a single node do the loading. Cells locked by another node
+   *     are polled for until that node writes them, and loaded here anyway if it does not
+   *     within the lock's lifetime. Stale cells are not waited for, their current value is
+   *     returned instead.
+   *   - The locks are released along with the writes. If loading fails, or the write is
+   *     dropped, they are left to expire.
+   */
+  private Map<String, List<RestaurantEntity>> loadCells(List<String> geoHashes,
+      Map<String, List<RestaurantEntity>> staleCells) throws Exception {
+    String lockToken = redisCacheInvalidationBus.getNodeId() + ":"
+        + Thread.currentThread().getId();
+    List<Response<String>> lockResponses;
+    try (Jedis jedis = redisConfiguration.getJedisPool().getResource()) {
+      lockResponses = redisConfiguration.pipelined(jedis, "cell-lock",
+          pipeline -> geoHashes.stream()
+              .map(geoHash -> pipeline.set(getLockKey(geoHash), lockToken, "NX", "PX",
+                  fillLockInMillis))
+              .collect(Collectors.toList()));
+    }
+
+    Map<String, List<RestaurantEntity>> restaurantEntitiesByCell = new HashMap<>();
+    List<String> lockedGeoHashes = new ArrayList<>();
+    List<String> contendedGeoHashes = new ArrayList<>();
+    for (int i = 0; i < geoHashes.size(); i++) {
+      String geoHash = geoHashes.get(i);
+      if (lockResponses.get(i).get() != null) {
+        lockedGeoHashes.add(geoHash);
+      } else if (staleCells.containsKey(geoHash)) {
+        restaurantEntitiesByCell.put(geoHash, staleCells.get(geoHash));
+      } else {
+        contendedGeoHashes.add(geoHash);
+      }
+    }
+
+    awaitCells(contendedGeoHashes).forEach((geoHash, cacheEntry) ->
+        restaurantEntitiesByCell.put(geoHash, cacheEntry.getValue()));
+    List<String> unloadedGeoHashes = geoHashes.stream()
+        .filter(geoHash -> !restaurantEntitiesByCell.containsKey(geoHash))
+        .collect(Collectors.toList());
+    if (unloadedGeoHashes.isEmpty()) {
+      return restaurantEntitiesByCell;
+    }
+
+    Map<String, List<RestaurantEntity>> loadedCells =
+        restaurantLocator.findRestaurantEntitiesInCells(unloadedGeoHashes);
+    long refreshAtMillis = softTtlInSeconds == 0 ? 0
+        : System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(softTtlInSeconds);
+    Map<String, List<RestaurantEntity>> cellsByKey = new LinkedHashMap<>();
+    for (String geoHash : unloadedGeoHashes) {
+      String key = getCacheKey(geoHash);
+      List<RestaurantEntity> restaurantEntities =
+          Collections.unmodifiableList(loadedCells.get(geoHash));
+      // Empty cells are cached too, so that they do not keep hitting the locator.
+      cellsByKey.put(key, restaurantEntities);
+      localCells.put(key, restaurantEntities);
+      restaurantEntitiesByCell.put(geoHash, restaurantEntities);
+    }
+    redisCacheWriter.submit(cellsByKey, RedisConfiguration.REDIS_ENTRY_EXPIRY_IN_SECONDS,
+        refreshAtMillis, pipeline -> lockedGeoHashes.forEach(geoHash ->
+            pipeline.eval(RELEASE_LOCK_SCRIPT, Collections.singletonList(getLockKey(geoHash)),
+                Collections.singletonList(lockToken))));
+    return restaurantEntitiesByCell;
+  }
+
+  /**
+   * Polls for cells being loaded by another node, for at most the lifetime of its locks.
+   * @return the cells which were written in time
+   */
+  private Map<String, CacheEntry<List<RestaurantEntity>>> awaitCells(List<String> geoHashes)
+      throws InterruptedException {
+    Map<String, CacheEntry<List<RestaurantEntity>>> cacheEntriesByCell = new HashMap<>();
+    List<String> pendingGeoHashes = new ArrayList<>(geoHashes);
+    long deadline = System.currentTimeMillis() + fillLockInMillis;
+    while (!pendingGeoHashes.isEmpty() && System.currentTimeMillis() < deadline) {
+      Thread.sleep(LOCK_POLL_INTERVAL_IN_MILLIS);
+      cacheEntriesByCell.putAll(readCells(pendingGeoHashes));
+      pendingGeoHashes.removeAll(cacheEntriesByCell.keySet());
+    }
+    return cacheEntriesByCell;
+  }
+
+  private static String getLockKey(String geoHash) {
+    return LOCK_KEY_PREFIX + getCacheKey(geoHash);
+  }
+
+}
@@ -0,0 +1,54 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.repositoryservices;
+
+import com.crio.qeats.models.RestaurantEntity;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.geo.GeoJsonPoint;
+import org.springframework.data.mongodb.core.mapping.event.AbstractMongoEventListener;
+import org.springframework.data.mongodb.core.mapping.event.AfterDeleteEvent;
+import org.springframework.data.mongodb.core.mapping.event.AfterSaveEvent;
+import org.springframework.data.mongodb.core.mapping.event.BeforeConvertEvent;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps the GeoJSON location and the in-memory restaurant indexes in sync with writes made
+ * through Spring Data.
+ */
+@Component
+public class RestaurantEntityEventListener extends AbstractMongoEventListener<RestaurantEntity> {
+
+  // Absent when another nearby strategy is configured.
+  @Autowired(required = false)
+  private RestaurantGeoIndex restaurantGeoIndex;
+
+  @Override
+  public void onBeforeConvert(BeforeConvertEvent<RestaurantEntity> event) {
+    RestaurantEntity restaurantEntity = event.getSource();
+    if (restaurantEntity.getLatitude() != null && restaurantEntity.getLongitude() != null) {
+      restaurantEntity.setLocation(new GeoJsonPoint(restaurantEntity.getLongitude(),
+          restaurantEntity.getLatitude()));
+    }
+  }
+
+  @Override
+  public void onAfterSave(AfterSaveEvent<RestaurantEntity> event) {
+    if (restaurantGeoIndex != null) {
+      restaurantGeoIndex.upsert(event.getSource());
+    }
+  }
+
+  @Override
+  public void onAfterDelete(AfterDeleteEvent<RestaurantEntity> event) {
+    Document query = event.getSource();
+    Object id = query == null ? null : query.get("_id");
+    if (id != null && restaurantGeoIndex != null) {
+      restaurantGeoIndex.remove(id.toString());
+    }
+  }
+}
@@ -0,0 +1,336 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.repositoryservices;
+
+import ch.hsr.geohash.GeoHash;
+import com.crio.qeats.models.MenuEntity;
+import com.crio.qeats.models.RestaurantEntity;
+import com.crio.qeats.repositories.RestaurantRepository;
+import com.crio.qeats.utils.GeoPoints;
+import com.crio.qeats.utils.GeoRadiusFilter;
+import com.crio.qeats.utils.GeoUtils;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * In-memory geohash bucketed grid of all restaurants.
+ *   - Rebuilt from every load of the {@link RestaurantCatalog}, which picks up writes made
+ *     outside this application (eg: mongoimport). A lookup coming before the first load builds
+ *     the grid from the database itself, retrying at most every qeats.geo-index.build-retry-ms
+ *     while that fails. Lookups fail until it is built, rather than answer with no restaurants
+ *     which would get cached as empty cells.
+ *   - Kept in sync in between through {@link RestaurantEntityEventListener}. Changes made
+ *     since the grid was last replaced are replayed onto the next one, so that a rebuild
+ *     running concurrently does not lose them.
+ *   - A lookup only visits the grid cells overlapping the bounding box of the serving radius,
+ *     so its cost depends on the local density and not on the size of the catalog.
+ */
+@Component
+@ConditionalOnProperty(name = RestaurantLocator.STRATEGY_PROPERTY, havingValue = "index",
+    matchIfMissing = true)
+@Log4j2
+public class RestaurantGeoIndex implements RestaurantLocator, RestaurantCatalog.Listener {
+
+  // ~1.2km x 0.6km cells, a 5km radius overlaps roughly 150 of them.
+  public static final int CELL_PRECISION = 6;
+
+  private static final char[] BASE32_CHARS = "0123456789bcdefghjkmnpqrstuvwxyz".toCharArray();
+
+  @Autowired
+  private RestaurantRepository restaurantRepository;
+
+  @Value("${qeats.geo-index.build-retry-ms:5000}")
+  private long buildRetryInMs;
+
+  private volatile Grid grid = new Grid();
+  // Whether grid was built from the database at least once.
+  private volatile boolean built;
+  private final Object buildLock = new Object();
+  // Guarded by buildLock, set when the last build by a lookup failed.
+  private RuntimeException lastBuildFailure;
+  private long lastBuildFailureMillis;
+  // Guarded by this. Restaurants upserted since grid was built by index key, null if removed.
+  private final Map<String, RestaurantEntity> changesSinceBuild = new HashMap<>();
+
+  /**
+   * Replaces the grid with one built from the restaurants just loaded. The old grid keeps
+   * serving lookups until the new one is ready.
+   */
+  @Override
+  public void onCatalogLoaded(List<RestaurantEntity> restaurantEntities,
+      List<MenuEntity> menuEntities) {
+    build(restaurantEntities);
+  }
+
+  /**
+   * Replaces the grid with one built from all the restaurants currently in the database,
+   * without waiting for the next catalog load.
+   */
+  public void rebuild() {
+    try {
+      build(restaurantRepository.findAll());
+    } catch (Exception e) {
+      log.error("Restaurant geo index rebuild failed, keeping the previous index", e);
+    }
+  }
+
+  private void build(List<RestaurantEntity> restaurantEntities) {
+    synchronized (buildLock) {
+      Grid newGrid = new Grid();
+      for (RestaurantEntity restaurantEntity : restaurantEntities) {
+        newGrid.upsert(restaurantEntity);
+      }
+      synchronized (this) {
+        // Replaying changes which the restaurants already had is harmless, the latest one of
+        // every restaurant is applied last.
+        changesSinceBuild.forEach((id, restaurantEntity) -> {
+          if (restaurantEntity == null) {
+            newGrid.remove(id);
+          } else {
+            newGrid.upsert(restaurantEntity);
+          }
+        });
+        changesSinceBuild.clear();
+        this.grid = newGrid;
+      }
+      built = true;
+      log.info("Restaurant geo index built with {} restaurants", newGrid.cellKeyById.size());
+    }
+  }
+
+  // The grid, built first if it never was. Throws if the database cannot be read, without
+  // reading it again for buildRetryInMs so that lookups do not queue up behind failing scans.
+  private Grid getBuiltGrid() {
+    if (!built) {
+      synchronized (buildLock) {
+        if (!built) {
+          if (lastBuildFailure != null
+              && System.currentTimeMillis() - lastBuildFailureMillis < buildRetryInMs) {
+            throw new IllegalStateException("Restaurant geo index is not built yet",
+                lastBuildFailure);
+          }
+          try {
+            build(restaurantRepository.findAll());
+            lastBuildFailure = null;
+          } catch (RuntimeException e) {
+            lastBuildFailure = e;
+            lastBuildFailureMillis = System.currentTimeMillis();
+            throw e;
+          }
+        }
+      }
+    }
+    return grid;
+  }
+
+  public synchronized void upsert(RestaurantEntity restaurantEntity) {
+    grid.upsert(restaurantEntity);
+    changesSinceBuild.put(getIndexKey(restaurantEntity), restaurantEntity);
+  }
+
+  public synchronized void remove(String id) {
+    grid.remove(id);
+    changesSinceBuild.put(id, null);
+  }
+
+  public int size() {
+    return grid.cellKeyById.size();
+  }
+
+  /**
+   * Get the restaurants within the specified serving radius.
+   * @return restaurants in the order they were added to the index (catalog order)
+   */
+  @Override
+  public List<RestaurantEntity> findRestaurantEntitiesCloseBy(Double latitude, Double longitude,
+      Double servingRadiusInKms) {
+    Grid currentGrid = getBuiltGrid();
+    GeoRadiusFilter servingArea = new GeoRadiusFilter(latitude, longitude, servingRadiusInKms);
+    TreeMap<Long, RestaurantEntity> closeByRestaurantEntities = new TreeMap<>();
+
+    for (String cellKey : GeoUtils.getCoveringGeoHashes(latitude, longitude,
+        servingRadiusInKms, CELL_PRECISION)) {
+      GeoCell cell = currentGrid.cells.get(cellKey);
+      if (cell == null) {
+        continue;
+      }
+      for (int i = 0; i < cell.entities.length; i++) {
+        if (cell.points.isWithin(i, servingArea)) {
+          closeByRestaurantEntities.put(cell.ordinals[i], cell.entities[i]);
+        }
+      }
+    }
+
+    return new ArrayList<>(closeByRestaurantEntities.values());
+  }
+
+  @Override
+  public Map<String, List<RestaurantEntity>> findRestaurantEntitiesInCells(
+      Collection<String> geoHashes) {
+    Grid currentGrid = getBuiltGrid();
+    Map<String, List<RestaurantEntity>> restaurantEntitiesByCell = new HashMap<>();
+
+    for (String geoHash : geoHashes) {
+      List<RestaurantEntity> restaurantEntities = new ArrayList<>();
+      for (GeoCell cell : currentGrid.getCellsWithin(geoHash)) {
+        for (RestaurantEntity entity : cell.entities) {
+          if (geoHash.length() <= CELL_PRECISION || geoHash.equals(GeoHash
+              .geoHashStringWithCharacterPrecision(entity.getLatitude(), entity.getLongitude(),
+                  geoHash.length()))) {
+            restaurantEntities.add(entity);
+          }
+        }
+      }
+      restaurantEntitiesByCell.put(geoHash, restaurantEntities);
+    }
+
+    return restaurantEntitiesByCell;
+  }
+
+  private static String getIndexKey(RestaurantEntity restaurantEntity) {
+    return restaurantEntity.getId() != null
+        ? restaurantEntity.getId() : restaurantEntity.getRestaurantId();
+  }
+
+  /**
+   * Immutable bucket of restaurants sharing a geohash cell, sorted by ordinal, with their
+   * coordinates kept as primitive columns for the radius filter.
+   */
+  private static class GeoCell {
+
+    private static final GeoCell EMPTY = new GeoCell(new RestaurantEntity[0], new long[0]);
+
+    private final RestaurantEntity[] entities;
+    private final long[] ordinals;
+    private final GeoPoints points;
+
+    private GeoCell(RestaurantEntity[] entities, long[] ordinals) {
+      this.entities = entities;
+      this.ordinals = ordinals;
+
+      double[] latitudes = new double[entities.length];
+      double[] longitudes = new double[entities.length];
+      for (int i = 0; i < entities.length; i++) {
+        latitudes[i] = entities[i].getLatitude();
+        longitudes[i] = entities[i].getLongitude();
+      }
+      this.points = new GeoPoints(latitudes, longitudes);
+    }
+
+    private GeoCell with(RestaurantEntity entity, long ordinal) {
+      GeoCell cell = without(ordinal);
+      int position = Arrays.binarySearch(cell.ordinals, ordinal);
+      int insertAt = -(position + 1);
+
+      RestaurantEntity[] newEntities = new RestaurantEntity[cell.entities.length + 1];
+      long[] newOrdinals = new long[cell.ordinals.length + 1];
+      System.arraycopy(cell.entities, 0, newEntities, 0, insertAt);
+      System.arraycopy(cell.ordinals, 0, newOrdinals, 0, insertAt);
+      newEntities[insertAt] = entity;
+      newOrdinals[insertAt] = ordinal;
+      System.arraycopy(cell.entities, insertAt, newEntities, insertAt + 1,
+          cell.entities.length - insertAt);
+      System.arraycopy(cell.ordinals, insertAt, newOrdinals, insertAt + 1,
+          cell.ordinals.length - insertAt);
+      return new GeoCell(newEntities, newOrdinals);
+    }
+
+    private GeoCell without(long ordinal) {
+      int position = Arrays.binarySearch(ordinals, ordinal);
+      if (position < 0) {
+        return this;
+      }
+      RestaurantEntity[] newEntities = new RestaurantEntity[entities.length - 1];
+      long[] newOrdinals = new long[ordinals.length - 1];
+      System.arraycopy(entities, 0, newEntities, 0, position);
+      System.arraycopy(ordinals, 0, newOrdinals, 0, position);
+      System.arraycopy(entities, position + 1, newEntities, position,
+          entities.length - position - 1);
+      System.arraycopy(ordinals, position + 1, newOrdinals, position,
+          ordinals.length - position - 1);
+      return new GeoCell(newEntities, newOrdinals);
+    }
+  }
+
+  /**
+   * Cells are copied on write so lookups never see a partially updated cell.
+   */
+  private static class Grid {
+
+    private final Map<String, GeoCell> cells = new ConcurrentHashMap<>();
+    private final Map<String, String> cellKeyById = new ConcurrentHashMap<>();
+    private final Map<String, Long> ordinalById = new ConcurrentHashMap<>();
+    private long nextOrdinal = 0;
+
+    private void upsert(RestaurantEntity restaurantEntity) {
+      if (restaurantEntity.getLatitude() == null || restaurantEntity.getLongitude() == null) {
+        return;
+      }
+      String id = getIndexKey(restaurantEntity);
+      remove(id);
+
+      long ordinal = ordinalById.computeIfAbsent(id, k -> nextOrdinal++);
+      String cellKey = GeoHash.geoHashStringWithCharacterPrecision(
+          restaurantEntity.getLatitude(), restaurantEntity.getLongitude(), CELL_PRECISION);
+      cells.put(cellKey, cells.getOrDefault(cellKey, GeoCell.EMPTY)
+          .with(restaurantEntity, ordinal));
+      cellKeyById.put(id, cellKey);
+    }
+
+    /**
+     * Grid cells overlapping the given geohash cell, which can be coarser or finer than them.
+     */
+    private List<GeoCell> getCellsWithin(String geoHash) {
+      List<GeoCell> overlapping = new ArrayList<>();
+      if (geoHash.length() >= CELL_PRECISION) {
+        GeoCell cell = cells.get(geoHash.substring(0, CELL_PRECISION));
+        if (cell != null) {
+          overlapping.add(cell);
+        }
+      } else if (CELL_PRECISION - geoHash.length() == 1) {
+        for (char base32 : BASE32_CHARS) {
+          GeoCell cell = cells.get(geoHash + base32);
+          if (cell != null) {
+            overlapping.add(cell);
+          }
+        }
+      } else {
+        cells.forEach((cellKey, cell) -> {
+          if (cellKey.startsWith(geoHash)) {
+            overlapping.add(cell);
+          }
+        });
+      }
+      return overlapping;
+    }
+
+    private void remove(String id) {
+      String cellKey = cellKeyById.remove(id);
+      if (cellKey == null) {
+        return;
+      }
+      GeoCell cell = cells.get(cellKey).without(ordinalById.get(id));
+      if (cell.entities.length == 0) {
+        cells.remove(cellKey);
+      } else {
+        cells.put(cellKey, cell);
+      }
+    }
+  }
+
+}
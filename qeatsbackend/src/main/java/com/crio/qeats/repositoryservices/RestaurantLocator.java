@@ -0,0 +1,42 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.repositoryservices;
+
+import com.crio.qeats.models.RestaurantEntity;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Strategy used to find the restaurants around a location on a cache miss.
+ * Selected with the {@code qeats.nearby.strategy} property:
+ *   - index (default): {@link RestaurantGeoIndex}, an in-memory geohash grid.
+ *   - mongo: {@link MongoGeoRestaurantLocator}, a 2dsphere query run by MongoDB.
+ */
+public interface RestaurantLocator {
+
+  String STRATEGY_PROPERTY = "qeats.nearby.strategy";
+
+  /**
+   * Get the restaurants within the specified serving radius, irrespective of opening hours.
+   * @param latitude coordinates near which we have to search for restaurant
+   * @param longitude coordinates near which we have to search for restaurant
+   * @param servingRadiusInKms serving radius
+   * @return list of restaurants within the specified radius or empty list if there is none
+   */
+  List<RestaurantEntity> findRestaurantEntitiesCloseBy(Double latitude, Double longitude,
+      Double servingRadiusInKms);
+
+  /**
+   * Get all the restaurants located inside each of the given geohash cells.
+   * @param geoHashes cells to look up
+   * @return restaurants of each cell keyed by its geohash, cells without restaurants are
+   *     present with an empty list
+   */
+  Map<String, List<RestaurantEntity>> findRestaurantEntitiesInCells(Collection<String> geoHashes);
+
+}
@@ -66,6 +66,16 @@ public interface RestaurantRepositoryService {
   List<Restaurant> findRestaurantsByItemAttributes(Double latitude, Double longitude,
       String searchString, LocalTime currentTime, Double servingRadiusInKms);
 
+  /**
+   * Get the list of open restaurants within the specified serving radius whose name or item
+   * names are close to the search string, tolerating typos. Bounded in time, so it may miss
+   * some matches.
+   * @param searchString Query string, possibly misspelt
+   * @return list of restaurants, closest matches first
+   */
+  List<Restaurant> findRestaurantsByFuzzyMatch(Double latitude, Double longitude,
+      String searchString, LocalTime currentTime, Double servingRadiusInKms);
+
   CompletableFuture<List<Restaurant>> findRestaurantsByNameMt(Double latitude, Double longitude,
       String searchString, LocalTime currentTime, Double servingRadiusInKms);
 
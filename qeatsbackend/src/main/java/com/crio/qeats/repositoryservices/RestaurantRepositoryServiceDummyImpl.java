@@ -68,6 +68,11 @@ public class RestaurantRepositoryServiceDummyImpl implements RestaurantRepositor
     return null;
   }
 
+  public List<Restaurant> findRestaurantsByFuzzyMatch(Double latitude, Double longitude,
+      String searchString, LocalTime currentTime, Double servingRadiusInKms) {
+    return null;
+  }
+
   public CompletableFuture<List<Restaurant>> findRestaurantsByNameMt(Double latitude, Double longitude,
       String searchString, LocalTime currentTime, Double servingRadiusInKms) {
 
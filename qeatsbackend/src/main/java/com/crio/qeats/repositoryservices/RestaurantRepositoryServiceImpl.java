@@ -1,266 +1,222 @@
 package com.crio.qeats.repositoryservices;
 
-import ch.hsr.geohash.GeoHash;
-import com.crio.qeats.configs.RedisConfiguration;
+import com.crio.qeats.configs.RedisCircuitBreaker;
 import com.crio.qeats.dto.Restaurant;
-import com.crio.qeats.globals.GlobalConstants;
-import com.crio.qeats.models.ItemEntity;
-import com.crio.qeats.models.MenuEntity;
 import com.crio.qeats.models.RestaurantEntity;
-import com.crio.qeats.repositories.ItemRepository;
-import com.crio.qeats.repositories.MenuRepository;
-import com.crio.qeats.repositories.RestaurantRepository;
-import com.crio.qeats.utils.GeoLocation;
+import com.crio.qeats.repositoryservices.RestaurantSearchCache.SearchTier;
+import com.crio.qeats.utils.GeoRadiusFilter;
 import com.crio.qeats.utils.GeoUtils;
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import java.io.IOException;
 import java.time.LocalTime;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collections;
-import java.util.HashSet;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
-import java.util.Optional;
-import java.util.Set;
 import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.CompletionException;
-import java.util.concurrent.Future;
-import java.util.regex.Pattern;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import javax.inject.Provider;
+import lombok.extern.log4j.Log4j2;
 import org.modelmapper.ModelMapper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Primary;
-import org.springframework.data.mongodb.core.MongoTemplate;
-import org.springframework.data.mongodb.core.query.Criteria;
-import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.scheduling.annotation.Async;
-import org.springframework.scheduling.annotation.AsyncResult;
 import org.springframework.stereotype.Service;
-import redis.clients.jedis.Jedis;
 
 
 @Service
 @Primary
+@Log4j2
 public class RestaurantRepositoryServiceImpl implements RestaurantRepositoryService {
 
+  private static final Comparator<RestaurantEntity> BY_ID = Comparator.comparing(
+      RestaurantEntity::getId, Comparator.nullsLast(Comparator.naturalOrder()));
 
+  @Autowired
+  private Provider<ModelMapper> modelMapperProvider;
 
   @Autowired
-  private RedisConfiguration redisConfiguration;
+  private RestaurantCellCache restaurantCellCache;
 
   @Autowired
-  private MongoTemplate mongoTemplate;
+  private RestaurantSearcher restaurantSearcher;
 
   @Autowired
-  private Provider<ModelMapper> modelMapperProvider;
+  private RestaurantLocator restaurantLocator;
 
   @Autowired
-  private ObjectMapper objectMapper;
+  private RestaurantSearchCache restaurantSearchCache;
 
   @Autowired
-  private MenuRepository menuRepository;
+  private FuzzyRestaurantIndex fuzzyRestaurantIndex;
 
   @Autowired
-  private RestaurantRepository restaurantRepository;
+  private RedisCircuitBreaker redisCircuitBreaker;
 
   private boolean isOpenNow(LocalTime time, RestaurantEntity res) {
-    LocalTime openingTime = LocalTime.parse(res.getOpensAt());
-    LocalTime closingTime = LocalTime.parse(res.getClosesAt());
-
-    return time.isAfter(openingTime) && time.isBefore(closingTime);
+    return res.getOpeningHours().isOpenAt(time);
   }
 
   public List<Restaurant> findAllRestaurantsCloseBy(Double latitude,
       Double longitude, LocalTime currentTime, Double servingRadiusInKms) {
 
-    int precision = servingRadiusInKms == 3.0 ? 7 : 6;
-    GeoHash geohash = GeoHash.withCharacterPrecision(latitude, longitude, precision);
-    String key = geohash.toBase32();
-
-    List<RestaurantEntity> closeByRestaurantEntities = getCloseByRestaurantEntitiesFromCacheOrDB(key, latitude, longitude, servingRadiusInKms);
+    List<RestaurantEntity> closeByRestaurantEntities = getCloseByRestaurantEntitiesFromCacheOrDB(
+        latitude, longitude, servingRadiusInKms);
     return getOpenRestaurants(closeByRestaurantEntities, currentTime);
 
   }
 
-  private List<RestaurantEntity> getCloseByRestaurantEntitiesFromCacheOrDB(String key, Double latitude, Double longitude, Double servingRadiusInKms) {
-    try(Jedis jedis = redisConfiguration.getJedisPool().getResource()) {
-
-      String fetchedJson = jedis.get(key);
-      if(fetchedJson != null) {
+  // Assembles the cached cells covering the serving radius and refines them to the exact
+  // radius, ordered by id so that the result does not depend on which cells were cached.
+  private List<RestaurantEntity> getCloseByRestaurantEntitiesFromCacheOrDB(Double latitude,
+      Double longitude, Double servingRadiusInKms) {
+    List<String> geoHashes = GeoUtils.getCoveringGeoHashes(latitude, longitude,
+        servingRadiusInKms, RestaurantCellCache.CELL_PRECISION);
+    try {
 
-        List<RestaurantEntity> cachedCloseByRestaurantEntities = objectMapper.readValue( fetchedJson, new TypeReference<List<RestaurantEntity>>() {});
-        return cachedCloseByRestaurantEntities;
-      }
-
-      List<RestaurantEntity> dbCloseByRestaurantEntities = getCloseByRestaurantEntitiesFromDB(latitude, longitude, servingRadiusInKms);
-      String json = objectMapper.writeValueAsString(dbCloseByRestaurantEntities);
-      jedis.setex(key, RedisConfiguration.REDIS_ENTRY_EXPIRY_IN_SECONDS, json);
+      Map<String, List<RestaurantEntity>> restaurantEntitiesByCell =
+          restaurantCellCache.getRestaurantEntitiesInCells(geoHashes);
+      List<RestaurantEntity> candidateRestaurantEntities = geoHashes.stream()
+          .flatMap(geoHash -> restaurantEntitiesByCell.get(geoHash).stream())
+          .collect(Collectors.toList());
 
-      return dbCloseByRestaurantEntities;
+      return getNearByRestaurantEntities(candidateRestaurantEntities, latitude, longitude,
+          servingRadiusInKms).stream()
+          .sorted(BY_ID)
+          .collect(Collectors.toList());
 
-    } catch(Exception e) {
-      e.printStackTrace();
-      return Collections.emptyList();
+    } catch (Exception e) {
+      log.warn("Cached lookup of nearby restaurants failed, querying them directly", e);
+      return redisCircuitBreaker.callFallback(() -> restaurantLocator
+          .findRestaurantEntitiesCloseBy(latitude, longitude, servingRadiusInKms).stream()
+          .sorted(BY_ID)
+          .collect(Collectors.toList()));
     }
 
   }
 
-  private List<RestaurantEntity> getCloseByRestaurantEntitiesFromDB(Double latitude, Double longitude, Double servingRadiusInKms) {
-    List<RestaurantEntity> restaurantEntities = restaurantRepository.findAll();
-    List<RestaurantEntity> nearByRestaurantEntities = getNearByRestaurantEntities(restaurantEntities, latitude, longitude, servingRadiusInKms);
-    return nearByRestaurantEntities;
-  }
+  private List<Restaurant> getOpenRestaurants(List<RestaurantEntity> restaurantEntities,
+      LocalTime currentTime) {
 
-  private List<Restaurant> getOpenRestaurants(List<RestaurantEntity> restaurantEntities, LocalTime currentTime) {
-    
-    return restaurantEntities.stream().filter( entity -> isOpenNow(currentTime, entity) )
-    .map( entity -> modelMapperProvider.get().map(entity, Restaurant.class))
-    .collect(Collectors.toList());
+    return restaurantEntities.stream().filter(entity -> isOpenNow(currentTime, entity))
+        .map(entity -> modelMapperProvider.get().map(entity, Restaurant.class))
+        .collect(Collectors.toList());
   }
 
-  private List<RestaurantEntity> getNearByRestaurantEntities(List<RestaurantEntity> restaurantEntities, Double latitude, Double longitude, Double servingRadiusInKms) {
+  private List<RestaurantEntity> getNearByRestaurantEntities(
+      List<RestaurantEntity> restaurantEntities, Double latitude, Double longitude,
+      Double servingRadiusInKms) {
+    GeoRadiusFilter servingArea = new GeoRadiusFilter(latitude, longitude, servingRadiusInKms);
     return restaurantEntities.stream()
-    .filter( entity -> GeoUtils.findDistanceInKm(latitude, longitude, entity.getLatitude(), entity.getLongitude()) < servingRadiusInKms)
-    .collect(Collectors.toList());
-
-  }
-   
-  private boolean isRestaurantCloseByAndOpen(RestaurantEntity restaurantEntity,
-      LocalTime currentTime, Double latitude, Double longitude, Double servingRadiusInKms) {
-    if (isOpenNow(currentTime, restaurantEntity)) {
-      return GeoUtils.findDistanceInKm(latitude, longitude,
-          restaurantEntity.getLatitude(), restaurantEntity.getLongitude())
-          < servingRadiusInKms;
-    }
+        .filter(entity -> servingArea.contains(entity.getLatitude(), entity.getLongitude()))
+        .collect(Collectors.toList());
 
-    return false;
   }
 
   @Override
   public List<Restaurant> findRestaurantsByName(Double latitude, Double longitude,
       String searchString, LocalTime currentTime, Double servingRadiusInKms) {
-        Optional<List<RestaurantEntity>> restaurantEntitiesWithMatchingNameOptional = restaurantRepository.findRestaurantsByNameExact(searchString);
-        if(restaurantEntitiesWithMatchingNameOptional.isEmpty()) {
-          return new ArrayList<>();
-        } else {
-          List<RestaurantEntity> restaurantEntitiesWithMatchingName = restaurantEntitiesWithMatchingNameOptional.get();
-          List<RestaurantEntity> nearByRestaurantEntitiesWithMatchingName = getNearByRestaurantEntities(restaurantEntitiesWithMatchingName, latitude, longitude, servingRadiusInKms);
-          List<RestaurantEntity> sortedNearByRestaurantEntities = nearByRestaurantEntitiesWithMatchingName.stream()
-          .sorted((r1, r2) -> {
-
-            boolean exactNameMatchR1 = r1.getName().equalsIgnoreCase(searchString);
-            boolean exactNameMatchR2 = r2.getName().equalsIgnoreCase(searchString);
-
-            return Boolean.compare(exactNameMatchR2, exactNameMatchR1);
-          })
-          .collect(Collectors.toList());
+    List<RestaurantEntity> nearByRestaurantEntitiesWithMatchingName =
+        findNearByRestaurantEntitiesMatching(SearchTier.NAME, searchString, latitude,
+            longitude, servingRadiusInKms, restaurantSearcher::findRestaurantEntitiesByName);
 
-          return getOpenRestaurants(sortedNearByRestaurantEntities, currentTime);
-        }
-     
+    return getOpenRestaurants(nearByRestaurantEntitiesWithMatchingName, currentTime);
   }
 
   @Override
   public List<Restaurant> findRestaurantsByAttributes(
       Double latitude, Double longitude,
       String searchString, LocalTime currentTime, Double servingRadiusInKms) {
-      List<RestaurantEntity> restaurantEntitiesWithMatchingAttribute = restaurantRepository.findByAttributesContainingIgnoreCase(searchString);
-      List<RestaurantEntity> nearByRestaurantEntitiesWithMatchingAttribute = getNearByRestaurantEntities(restaurantEntitiesWithMatchingAttribute, latitude, longitude, servingRadiusInKms);
+    List<RestaurantEntity> nearByRestaurantEntitiesWithMatchingAttribute =
+        findNearByRestaurantEntitiesMatching(SearchTier.ATTRIBUTES, searchString, latitude,
+            longitude, servingRadiusInKms, restaurantSearcher::findRestaurantEntitiesByAttributes);
 
-      return getOpenRestaurants(nearByRestaurantEntitiesWithMatchingAttribute, currentTime);
+    return getOpenRestaurants(nearByRestaurantEntitiesWithMatchingAttribute, currentTime);
   }
 
   @Override
   public List<Restaurant> findRestaurantsByItemName(
       Double latitude, Double longitude,
       String searchString, LocalTime currentTime, Double servingRadiusInKms) {
-      //finding and sorting menu entities which have matching item name
-      List<MenuEntity> menuEntitiesWithMatchingItemName = menuRepository.findMenusByItemsNameContainingIgnoreCase(searchString);
-      List<String> orderedRestaurantIds = menuEntitiesWithMatchingItemName.stream()
-      .sorted((m1, m2) -> {
-        boolean isM1ContainsExactItem = isSearchStrEqualsAnyItemNameInMenuEntity(m1, searchString);
-        boolean isM2ContainsExactItem = isSearchStrEqualsAnyItemNameInMenuEntity(m2, searchString);
-
-        return Boolean.compare(isM2ContainsExactItem, isM1ContainsExactItem);
-      })
-      .map(MenuEntity::getRestaurantId)
-      .distinct()
-      .collect(Collectors.toList());
-      //getting restaurants corresponding to founded matching menus
-      List<RestaurantEntity> restaurantEntitiesWithMatchingItemName = restaurantRepository.findByRestaurantIdIn(orderedRestaurantIds);
-      //ordering restaurant entity in same order as menu entity (with exact matches first)
-      Map<String, RestaurantEntity> byIdMap = restaurantEntitiesWithMatchingItemName.stream()
-      .collect(Collectors.toMap(RestaurantEntity::getRestaurantId, r -> r));
-      List<RestaurantEntity> orderedRestaurantEntitiesWithMatchingItemName = orderedRestaurantIds.stream()
-      .map(byIdMap::get)
-      .filter(Objects::nonNull)
-      .collect(Collectors.toList());
-      //finding nearby reastaurants
-      List<RestaurantEntity> nearByOrderedRestaurantEntitiesWithMatchingItemName = getNearByRestaurantEntities(orderedRestaurantEntitiesWithMatchingItemName, latitude, longitude, servingRadiusInKms);
-
-     return getOpenRestaurants(nearByOrderedRestaurantEntitiesWithMatchingItemName, currentTime);
+    List<RestaurantEntity> nearByOrderedRestaurantEntitiesWithMatchingItemName =
+        findNearByRestaurantEntitiesMatching(SearchTier.ITEM_NAME, searchString, latitude,
+            longitude, servingRadiusInKms, restaurantSearcher::findRestaurantEntitiesByItemName);
+
+    return getOpenRestaurants(nearByOrderedRestaurantEntitiesWithMatchingItemName, currentTime);
   }
 
   @Override
   public List<Restaurant> findRestaurantsByItemAttributes(Double latitude, Double longitude,
       String searchString, LocalTime currentTime, Double servingRadiusInKms) {
 
-      List<MenuEntity> menuEntitiesWithMatchingItemAttribute = menuRepository.findMenusByItemsAttributesContainingIgnoreCase(searchString);
-      List<String> restaurantIds = menuEntitiesWithMatchingItemAttribute.stream()
-      .map(MenuEntity::getRestaurantId)
-      .distinct()
-      .collect(Collectors.toList());
-      //getting restaurants corresponding to founded matching menus
-      List<RestaurantEntity> restaurantEntitiesWithMatchingItemAttribute = restaurantRepository.findByRestaurantIdIn(restaurantIds);
-      //finding nearby reastaurants
-      List<RestaurantEntity> nearByRestaurantEntitiesWithMatchingItemAttribute = getNearByRestaurantEntities(restaurantEntitiesWithMatchingItemAttribute, latitude, longitude, servingRadiusInKms);
-
-     return getOpenRestaurants(nearByRestaurantEntitiesWithMatchingItemAttribute, currentTime);
+    List<RestaurantEntity> nearByRestaurantEntitiesWithMatchingItemAttribute =
+        findNearByRestaurantEntitiesMatching(SearchTier.ITEM_ATTRIBUTES, searchString,
+            latitude, longitude, servingRadiusInKms,
+            restaurantSearcher::findRestaurantEntitiesByItemAttributes);
+
+    return getOpenRestaurants(nearByRestaurantEntitiesWithMatchingItemAttribute, currentTime);
   }
 
-  private boolean isSearchStrEqualsAnyItemNameInMenuEntity(MenuEntity menu, String searchString) {
-    return menu.getItems().stream()
-        .anyMatch(item -> item.getName().toLowerCase()
-            .equals(searchString.toLowerCase()));
+  // Not cached: the fuzzy index is in memory and its queries are bounded in time.
+  @Override
+  public List<Restaurant> findRestaurantsByFuzzyMatch(Double latitude, Double longitude,
+      String searchString, LocalTime currentTime, Double servingRadiusInKms) {
+    List<RestaurantEntity> nearByRestaurantEntitiesWithSimilarName = getNearByRestaurantEntities(
+        fuzzyRestaurantIndex.findRestaurantEntitiesSimilarTo(
+            RestaurantSearchCache.normalize(searchString)),
+        latitude, longitude, servingRadiusInKms);
+
+    return getOpenRestaurants(nearByRestaurantEntitiesWithSimilarName, currentTime);
+  }
+
+  // Serves a search tier through the search cache, or queries it directly if that fails.
+  private List<RestaurantEntity> findNearByRestaurantEntitiesMatching(SearchTier searchTier,
+      String searchString, Double latitude, Double longitude, Double servingRadiusInKms,
+      Function<String, List<RestaurantEntity>> matcher) {
+    String query = RestaurantSearchCache.normalize(searchString);
+    try {
+      return restaurantSearchCache.findNearByRestaurantEntities(searchTier, query, latitude,
+          longitude, servingRadiusInKms, matcher);
+    } catch (Exception e) {
+      log.warn("Cached search failed, querying directly", e);
+      return getNearByRestaurantEntities(matcher.apply(query), latitude, longitude,
+          servingRadiusInKms);
+    }
   }
 
   //Multithreading implementation of restaurants by search string calls
   @Async("restaurantTaskExecutor")
   @Override
-  public CompletableFuture<List<Restaurant>> findRestaurantsByNameMt(Double latitude, Double longitude,
-      String searchString, LocalTime currentTime, Double servingRadiusInKms) {
+  public CompletableFuture<List<Restaurant>> findRestaurantsByNameMt(Double latitude,
+      Double longitude, String searchString, LocalTime currentTime, Double servingRadiusInKms) {
 
-    return CompletableFuture.completedFuture(findRestaurantsByName(latitude, longitude, searchString, currentTime, servingRadiusInKms));
+    return CompletableFuture.completedFuture(findRestaurantsByName(latitude, longitude,
+        searchString, currentTime, servingRadiusInKms));
   }
 
   @Async("restaurantTaskExecutor")
   @Override
-  public CompletableFuture<List<Restaurant>> findRestaurantsByAttributesMt(Double latitude, Double longitude,
-  String searchString, LocalTime currentTime, Double servingRadiusInKms) {
+  public CompletableFuture<List<Restaurant>> findRestaurantsByAttributesMt(Double latitude,
+      Double longitude, String searchString, LocalTime currentTime, Double servingRadiusInKms) {
 
-    return CompletableFuture.completedFuture(findRestaurantsByAttributes(latitude, longitude, searchString, currentTime, servingRadiusInKms));
+    return CompletableFuture.completedFuture(findRestaurantsByAttributes(latitude, longitude,
+        searchString, currentTime, servingRadiusInKms));
   }
 
   @Async("restaurantTaskExecutor")
   @Override
-  public CompletableFuture<List<Restaurant>> findRestaurantsByItemNameMt(Double latitude, Double longitude,
-    String searchString, LocalTime currentTime, Double servingRadiusInKms) {
+  public CompletableFuture<List<Restaurant>> findRestaurantsByItemNameMt(Double latitude,
+      Double longitude, String searchString, LocalTime currentTime, Double servingRadiusInKms) {
 
-    return CompletableFuture.completedFuture(findRestaurantsByItemName(latitude, longitude, searchString, currentTime, servingRadiusInKms));
+    return CompletableFuture.completedFuture(findRestaurantsByItemName(latitude, longitude,
+        searchString, currentTime, servingRadiusInKms));
   }
 
   @Async("restaurantTaskExecutor")
   @Override
-  public CompletableFuture<List<Restaurant>> findRestaurantsByItemAttributesMt(Double latitude, Double longitude,
-      String searchString, LocalTime currentTime, Double servingRadiusInKms) {
+  public CompletableFuture<List<Restaurant>> findRestaurantsByItemAttributesMt(Double latitude,
+      Double longitude, String searchString, LocalTime currentTime, Double servingRadiusInKms) {
 
-    return CompletableFuture.completedFuture(findRestaurantsByItemAttributes(latitude, longitude, searchString, currentTime, servingRadiusInKms));
+    return CompletableFuture.completedFuture(findRestaurantsByItemAttributes(latitude,
+        longitude, searchString, currentTime, servingRadiusInKms));
   }
 
 }
-
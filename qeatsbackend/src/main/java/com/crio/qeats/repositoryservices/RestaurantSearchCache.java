@@ -0,0 +1,335 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.repositoryservices;
+
+import ch.hsr.geohash.BoundingBox;
+import ch.hsr.geohash.GeoHash;
+import com.crio.qeats.configs.RedisCircuitBreaker;
+import com.crio.qeats.configs.RedisConfiguration;
+import com.crio.qeats.models.RestaurantEntity;
+import com.crio.qeats.utils.GeoRadiusFilter;
+import com.crio.qeats.utils.GeoUtils;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.net.UrlEscapers;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import javax.annotation.PostConstruct;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.exceptions.JedisException;
+import redis.clients.util.SafeEncoder;
+
+/**
+ * Redis cache of search results, keyed by search tier, normalized query, serving radius and the
+ * geohash cell the user is in.
+ *   - Values are the ordered ids of the matching restaurants which the serving radius can reach
+ *     from anywhere in the cell, so one entry serves every user in the cell. The exact radius and
+ *     the opening hours are applied per request, on restaurants taken from
+ *     {@link RestaurantCellCache}.
+ *   - The serving radius stands for the time slot, as it only changes between peak and normal
+ *     hours.
+ *   - All the tiers of a search are read with one MGET and kept locally, so a repeated search
+ *     is a single read. Searchers which find every tier in one query fill all the missing tiers
+ *     on the first miss.
+ *   - With qeats.search.geo-first, a miss matches the query only against the restaurants near
+ *     the cell, with {@link NearbyRestaurantMatcher}, instead of using the search strategy.
+ *   - Entries expire after qeats.search-cache.expiry-seconds and Redis evicts them by its
+ *     maxmemory policy, the local copies are bounded by qeats.search-cache.l1.max-entries (LRU).
+ */
+@Component
+@Log4j2
+public class RestaurantSearchCache {
+
+  public enum SearchTier {
+    NAME, ATTRIBUTES, ITEM_NAME, ITEM_ATTRIBUTES
+  }
+
+  // ~1.2km x 0.6km cells.
+  public static final int CELL_PRECISION = 6;
+
+  private static final String KEY_PREFIX = "search:";
+  private static final TypeReference<List<String>> RESTAURANT_IDS_TYPE =
+      new TypeReference<List<String>>() {};
+
+  @Autowired
+  private RedisConfiguration redisConfiguration;
+
+  @Autowired
+  private RedisCircuitBreaker redisCircuitBreaker;
+
+  @Autowired
+  private CacheEntrySerializer cacheEntrySerializer;
+
+  @Autowired
+  private RedisCacheInvalidationBus redisCacheInvalidationBus;
+
+  @Autowired
+  private RestaurantCellCache restaurantCellCache;
+
+  @Autowired
+  private HotKeyTracker hotKeyTracker;
+
+  @Autowired
+  private RedisCacheWriter redisCacheWriter;
+
+  @Autowired
+  private RestaurantSearcher restaurantSearcher;
+
+  @Autowired
+  private NearbyRestaurantMatcher nearbyRestaurantMatcher;
+
+  @Value("${qeats.search.geo-first:false}")
+  private boolean geoFirst;
+
+  @Value("${qeats.search-cache.expiry-seconds:300}")
+  private int expiryInSeconds;
+
+  @Value("${qeats.search-cache.l1.max-entries:10000}")
+  private long localMaxEntries;
+
+  @Value("${qeats.cache.l1.expiry-seconds:60}")
+  private long localExpiryInSeconds;
+
+  // Keyed by cache key, values are shared between requests and must not be modified.
+  private Cache<String, List<String>> localResults;
+
+  @PostConstruct
+  public void initLocalCache() {
+    localResults = CacheBuilder.newBuilder()
+        .maximumSize(localMaxEntries)
+        .expireAfterWrite(localExpiryInSeconds, TimeUnit.SECONDS)
+        .build();
+    redisCacheInvalidationBus.addListener(key -> {
+      if (RedisConfiguration.CACHE_INVALIDATE_ALL.equals(key)) {
+        localResults.invalidateAll();
+      } else if (key.startsWith(KEY_PREFIX)) {
+        localResults.invalidate(key);
+      }
+    });
+  }
+
+  /**
+   * Normalizes a search string so that equivalent searches share their entries. Matching is
+   * case insensitive, so queries should be run with the normalized string too.
+   */
+  public static String normalize(String searchString) {
+    return searchString.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+  }
+
+  public static String getCacheKey(SearchTier searchTier, String query, String geoHash,
+      Double servingRadiusInKms) {
+    // Encoded, as keys are space separated in invalidation messages.
+    return KEY_PREFIX + searchTier.name().toLowerCase(Locale.ROOT) + ":" + servingRadiusInKms
+        + ":" + geoHash + ":" + UrlEscapers.urlFormParameterEscaper().escape(query);
+  }
+
+  /**
+   * Get the restaurants within the serving radius which match a query.
+   * @param query a {@link #normalize(String)}d search string
+   * @param matcher finds every restaurant matching the query, best matches first
+   * @return the matching restaurants within the serving radius, in the matcher's order
+   * @throws Exception if the restaurants cannot be read from {@link RestaurantCellCache}
+   */
+  public List<RestaurantEntity> findNearByRestaurantEntities(SearchTier searchTier,
+      String query, Double latitude, Double longitude, Double servingRadiusInKms,
+      Function<String, List<RestaurantEntity>> matcher) throws Exception {
+    String geoHash = GeoHash.geoHashStringWithCharacterPrecision(latitude, longitude,
+        CELL_PRECISION);
+    hotKeyTracker.recordSearch(query, geoHash, servingRadiusInKms);
+    List<String> restaurantIds = localResults.getIfPresent(
+        getCacheKey(searchTier, query, geoHash, servingRadiusInKms));
+    // The restaurants near the cell also cover the serving area, so they are read once.
+    List<RestaurantEntity> restaurantEntitiesNearCell = null;
+    if (restaurantIds == null) {
+      if (geoFirst) {
+        restaurantEntitiesNearCell = findRestaurantEntitiesNearCell(geoHash, servingRadiusInKms);
+      }
+      restaurantIds = readRestaurantIds(searchTier, query, geoHash, servingRadiusInKms, matcher,
+          restaurantEntitiesNearCell);
+    }
+    if (restaurantIds.isEmpty()) {
+      return Collections.emptyList();
+    }
+
+    if (restaurantEntitiesNearCell == null) {
+      restaurantEntitiesNearCell = new ArrayList<>();
+      List<String> geoHashes = GeoUtils.getCoveringGeoHashes(latitude, longitude,
+          servingRadiusInKms, RestaurantCellCache.CELL_PRECISION);
+      for (List<RestaurantEntity> cell
+          : restaurantCellCache.getRestaurantEntitiesInCells(geoHashes).values()) {
+        restaurantEntitiesNearCell.addAll(cell);
+      }
+    }
+    GeoRadiusFilter servingArea = new GeoRadiusFilter(latitude, longitude, servingRadiusInKms);
+    Map<String, RestaurantEntity> restaurantEntitiesById = new HashMap<>();
+    for (RestaurantEntity restaurantEntity : restaurantEntitiesNearCell) {
+      if (servingArea.contains(restaurantEntity.getLatitude(), restaurantEntity.getLongitude())) {
+        restaurantEntitiesById.put(restaurantEntity.getRestaurantId(), restaurantEntity);
+      }
+    }
+    return restaurantIds.stream()
+        .map(restaurantEntitiesById::get)
+        .filter(Objects::nonNull)
+        .collect(Collectors.toList());
+  }
+
+  private List<String> readRestaurantIds(SearchTier searchTier, String query, String geoHash,
+      Double servingRadiusInKms, Function<String, List<RestaurantEntity>> matcher,
+      List<RestaurantEntity> restaurantEntitiesNearCell) throws IOException {
+    String key = getCacheKey(searchTier, query, geoHash, servingRadiusInKms);
+    if (!redisConfiguration.isCacheAvailable()) {
+      return redisCircuitBreaker.callFallback(() -> searchTiers(searchTier,
+          Arrays.asList(SearchTier.values()), query, geoHash, servingRadiusInKms, matcher,
+          restaurantEntitiesNearCell).get(key));
+    }
+
+    // The other tiers of the same search are about to be asked for too.
+    SearchTier[] searchTiers = SearchTier.values();
+    String[] keys = new String[searchTiers.length];
+    for (int i = 0; i < searchTiers.length; i++) {
+      keys[i] = getCacheKey(searchTiers[i], query, geoHash, servingRadiusInKms);
+    }
+    List<byte[]> fetchedEntries;
+    try (Jedis jedis = redisConfiguration.getJedisPool().getResource()) {
+      fetchedEntries = redisConfiguration.timeCommand("mget",
+          () -> jedis.mget(SafeEncoder.encodeMany(keys)));
+    } catch (JedisException e) {
+      redisCircuitBreaker.recordFailure();
+      log.warn("Reading search results from Redis failed, searching directly: {}",
+          e.getMessage());
+      return redisCircuitBreaker.callFallback(() -> searchTiers(searchTier,
+          Arrays.asList(searchTiers), query, geoHash, servingRadiusInKms, matcher,
+          restaurantEntitiesNearCell).get(key));
+    }
+    redisCircuitBreaker.recordSuccess();
+
+    List<String> restaurantIds = null;
+    List<SearchTier> missingTiers = new ArrayList<>();
+    for (int i = 0; i < searchTiers.length; i++) {
+      byte[] fetchedEntry = fetchedEntries.get(i);
+      CacheEntry<List<String>> cacheEntry = null;
+      try {
+        cacheEntry = fetchedEntry == null ? null
+            : cacheEntrySerializer.deserialize(fetchedEntry, RESTAURANT_IDS_TYPE);
+      } catch (IOException e) {
+        // Read as a miss, so that the search overwrites it.
+        log.warn("Ignoring corrupt cache entry {}: {}", keys[i], e.getMessage());
+      }
+      if (cacheEntry != null) {
+        List<String> fetchedIds = Collections.unmodifiableList(cacheEntry.getValue());
+        localResults.put(keys[i], fetchedIds);
+        if (searchTiers[i] == searchTier) {
+          restaurantIds = fetchedIds;
+        }
+      } else {
+        missingTiers.add(searchTiers[i]);
+      }
+    }
+
+    if (restaurantIds == null) {
+      Map<String, List<String>> foundEntries = searchTiers(searchTier, missingTiers, query,
+          geoHash, servingRadiusInKms, matcher, restaurantEntitiesNearCell);
+      redisCacheWriter.submit(foundEntries, expiryInSeconds);
+      restaurantIds = foundEntries.get(key);
+    }
+    return restaurantIds;
+  }
+
+  // Searches every missing tier among the restaurants near the cell when they are given, else
+  // the given tier with the matcher, or every missing tier at once when the searcher can do
+  // that in a single query. The results are kept locally and returned by cache key.
+  private Map<String, List<String>> searchTiers(SearchTier searchTier,
+      List<SearchTier> missingTiers, String query, String geoHash, Double servingRadiusInKms,
+      Function<String, List<RestaurantEntity>> matcher,
+      List<RestaurantEntity> restaurantEntitiesNearCell) {
+    Map<SearchTier, List<RestaurantEntity>> restaurantEntitiesByTier;
+    if (restaurantEntitiesNearCell != null) {
+      restaurantEntitiesByTier = nearbyRestaurantMatcher.findMatches(query,
+          restaurantEntitiesNearCell);
+    } else if (restaurantSearcher.searchesAllTiersAtOnce()) {
+      restaurantEntitiesByTier = restaurantSearcher.findRestaurantEntitiesByAllTiers(query);
+    } else {
+      restaurantEntitiesByTier = Collections.singletonMap(searchTier, matcher.apply(query));
+    }
+
+    Map<String, List<String>> foundEntries = new HashMap<>();
+    for (Map.Entry<SearchTier, List<RestaurantEntity>> tier
+        : restaurantEntitiesByTier.entrySet()) {
+      if (tier.getKey() == searchTier || missingTiers.contains(tier.getKey())) {
+        String key = getCacheKey(tier.getKey(), query, geoHash, servingRadiusInKms);
+        List<String> restaurantIds = findRestaurantIdsNearCell(geoHash, servingRadiusInKms,
+            tier.getValue());
+        localResults.put(key, restaurantIds);
+        foundEntries.put(key, restaurantIds);
+      }
+    }
+    return foundEntries;
+  }
+
+  // Restaurants the serving radius can reach from any point of the cell.
+  private List<RestaurantEntity> findRestaurantEntitiesNearCell(String geoHash,
+      Double servingRadiusInKms) throws Exception {
+    BoundingBox cell = GeoHash.fromGeohashString(geoHash).getBoundingBox();
+    double centerLatitude = (cell.getMinLat() + cell.getMaxLat()) / 2;
+    double centerLongitude = (cell.getMinLon() + cell.getMaxLon()) / 2;
+    double reachInKms = getReachInKms(cell, servingRadiusInKms);
+    List<String> geoHashes = GeoUtils.getCoveringGeoHashes(centerLatitude, centerLongitude,
+        reachInKms, RestaurantCellCache.CELL_PRECISION);
+
+    GeoRadiusFilter reach = new GeoRadiusFilter(centerLatitude, centerLongitude, reachInKms);
+    List<RestaurantEntity> restaurantEntities = new ArrayList<>();
+    for (List<RestaurantEntity> restaurantCell
+        : restaurantCellCache.getRestaurantEntitiesInCells(geoHashes).values()) {
+      for (RestaurantEntity restaurantEntity : restaurantCell) {
+        if (reach.contains(restaurantEntity.getLatitude(), restaurantEntity.getLongitude())) {
+          restaurantEntities.add(restaurantEntity);
+        }
+      }
+    }
+    return restaurantEntities;
+  }
+
+  private static GeoRadiusFilter getReach(String geoHash, Double servingRadiusInKms) {
+    BoundingBox cell = GeoHash.fromGeohashString(geoHash).getBoundingBox();
+    return new GeoRadiusFilter((cell.getMinLat() + cell.getMaxLat()) / 2,
+        (cell.getMinLon() + cell.getMaxLon()) / 2, getReachInKms(cell, servingRadiusInKms));
+  }
+
+  private static double getReachInKms(BoundingBox cell, Double servingRadiusInKms) {
+    double centerLatitude = (cell.getMinLat() + cell.getMaxLat()) / 2;
+    double centerLongitude = (cell.getMinLon() + cell.getMaxLon()) / 2;
+    return servingRadiusInKms + GeoUtils.findDistanceInKm(centerLatitude, centerLongitude,
+        cell.getMaxLat(), cell.getMaxLon());
+  }
+
+  // Ids of the restaurants the serving radius can reach from any point of the cell.
+  private List<String> findRestaurantIdsNearCell(String geoHash, Double servingRadiusInKms,
+      List<RestaurantEntity> restaurantEntities) {
+    GeoRadiusFilter reach = getReach(geoHash, servingRadiusInKms);
+    return Collections.unmodifiableList(restaurantEntities.stream()
+        .filter(entity -> reach.contains(entity.getLatitude(), entity.getLongitude()))
+        .map(RestaurantEntity::getRestaurantId)
+        .distinct()
+        .collect(Collectors.toList()));
+  }
+
+}
@@ -0,0 +1,153 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.repositoryservices;
+
+import com.crio.qeats.dto.Item;
+import com.crio.qeats.models.MenuEntity;
+import com.crio.qeats.models.RestaurantEntity;
+import com.crio.qeats.utils.SubstringIndex;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * In-memory inverted index of restaurant names, restaurant attributes, item names and item
+ * attributes, each in its own {@link SubstringIndex} so that the search tiers stay separate.
+ *   - Rebuilt from every load of the {@link RestaurantCatalog}. Writes show up in searches
+ *     after the next load.
+ *   - Values are indexed {@link RestaurantSearchCache#normalize(String)}d, a query matches
+ *     the values containing it as is. Unlike the regex queries, the query is never
+ *     interpreted as a pattern.
+ *   - Matches come in the order of the restaurants collection, exact matches first where a
+ *     tier ranks them.
+ */
+@Component
+@ConditionalOnProperty(name = RestaurantSearcher.STRATEGY_PROPERTY, havingValue = "index")
+@Log4j2
+public class RestaurantSearchIndex implements RestaurantSearcher, RestaurantCatalog.Listener {
+
+  private volatile Snapshot snapshot = new Snapshot(Collections.emptyList(),
+      Collections.emptyList());
+
+  /**
+   * Replaces the index with one built from the restaurants and menus just loaded. The old
+   * index keeps serving searches until the new one is ready.
+   */
+  @Override
+  public void onCatalogLoaded(List<RestaurantEntity> restaurantEntities,
+      List<MenuEntity> menuEntities) {
+    Snapshot newSnapshot = new Snapshot(restaurantEntities, menuEntities);
+    snapshot = newSnapshot;
+    log.info("Restaurant search index built with {} restaurants and {} items",
+        newSnapshot.restaurantEntities.length, newSnapshot.itemNames.size());
+  }
+
+  @Override
+  public List<RestaurantEntity> findRestaurantEntitiesByName(String query) {
+    Snapshot current = snapshot;
+    return current.toRestaurantEntities(current.names.findEqual(query),
+        current.names.findContaining(query));
+  }
+
+  @Override
+  public List<RestaurantEntity> findRestaurantEntitiesByAttributes(String query) {
+    Snapshot current = snapshot;
+    return current.toRestaurantEntities(new int[0], current.attributes.findContaining(query));
+  }
+
+  @Override
+  public List<RestaurantEntity> findRestaurantEntitiesByItemName(String query) {
+    Snapshot current = snapshot;
+    return current.toRestaurantEntities(current.itemNames.findEqual(query),
+        current.itemNames.findContaining(query));
+  }
+
+  @Override
+  public List<RestaurantEntity> findRestaurantEntitiesByItemAttributes(String query) {
+    Snapshot current = snapshot;
+    return current.toRestaurantEntities(new int[0],
+        current.itemAttributes.findContaining(query));
+  }
+
+  // Documents of the indexes are positions in restaurantEntities.
+  private static final class Snapshot {
+    private final RestaurantEntity[] restaurantEntities;
+    private final SubstringIndex names;
+    private final SubstringIndex attributes;
+    private final SubstringIndex itemNames;
+    private final SubstringIndex itemAttributes;
+
+    private Snapshot(List<RestaurantEntity> restaurantEntities, List<MenuEntity> menuEntities) {
+      this.restaurantEntities = restaurantEntities.toArray(new RestaurantEntity[0]);
+      SubstringIndex.Builder namesBuilder = SubstringIndex.builder();
+      SubstringIndex.Builder attributesBuilder = SubstringIndex.builder();
+      Map<String, Integer> positionsById = new HashMap<>();
+      for (int position = 0; position < this.restaurantEntities.length; position++) {
+        RestaurantEntity restaurantEntity = this.restaurantEntities[position];
+        positionsById.put(restaurantEntity.getRestaurantId(), position);
+        addValue(namesBuilder, position, restaurantEntity.getName());
+        if (restaurantEntity.getAttributes() != null) {
+          for (String attribute : restaurantEntity.getAttributes()) {
+            addValue(attributesBuilder, position, attribute);
+          }
+        }
+      }
+
+      SubstringIndex.Builder itemNamesBuilder = SubstringIndex.builder();
+      SubstringIndex.Builder itemAttributesBuilder = SubstringIndex.builder();
+      for (MenuEntity menuEntity : menuEntities) {
+        Integer position = positionsById.get(menuEntity.getRestaurantId());
+        if (position == null || menuEntity.getItems() == null) {
+          continue;
+        }
+        for (Item item : menuEntity.getItems()) {
+          addValue(itemNamesBuilder, position, item.getName());
+          if (item.getAttributes() != null) {
+            for (String attribute : item.getAttributes()) {
+              addValue(itemAttributesBuilder, position, attribute);
+            }
+          }
+        }
+      }
+
+      names = namesBuilder.build();
+      attributes = attributesBuilder.build();
+      itemNames = itemNamesBuilder.build();
+      itemAttributes = itemAttributesBuilder.build();
+    }
+
+    private static void addValue(SubstringIndex.Builder builder, int position, String value) {
+      if (value != null) {
+        builder.add(position, RestaurantSearchCache.normalize(value));
+      }
+    }
+
+    // Exact matches first, then the remaining matches, each in collection order.
+    private List<RestaurantEntity> toRestaurantEntities(int[] exactPositions,
+        int[] matchingPositions) {
+      List<RestaurantEntity> matches = new ArrayList<>(matchingPositions.length);
+      BitSet added = new BitSet(restaurantEntities.length);
+      for (int position : exactPositions) {
+        added.set(position);
+        matches.add(restaurantEntities[position]);
+      }
+      for (int position : matchingPositions) {
+        if (!added.get(position)) {
+          matches.add(restaurantEntities[position]);
+        }
+      }
+      return matches;
+    }
+  }
+
+}
@@ -0,0 +1,71 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.repositoryservices;
+
+import com.crio.qeats.models.RestaurantEntity;
+import com.crio.qeats.repositoryservices.RestaurantSearchCache.SearchTier;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Strategy used to find the restaurants matching a search query, on a search cache miss.
+ * Selected with the {@code qeats.search.strategy} property:
+ *   - mongo (default): {@link MongoRestaurantSearcher}, case insensitive regex queries.
+ *   - index: {@link RestaurantSearchIndex}, an in-memory n-gram index.
+ *   - aggregation: {@link MongoAggregationRestaurantSearcher}, joins in MongoDB aggregations.
+ * Matches are not filtered by distance or opening hours, and are ordered best first.
+ */
+public interface RestaurantSearcher {
+
+  String STRATEGY_PROPERTY = "qeats.search.strategy";
+
+  /**
+   * Get the restaurants whose name contains the query, exact matches first.
+   * @param query a {@link RestaurantSearchCache#normalize(String)}d search string
+   */
+  List<RestaurantEntity> findRestaurantEntitiesByName(String query);
+
+  /**
+   * Get the restaurants having an attribute which contains the query.
+   */
+  List<RestaurantEntity> findRestaurantEntitiesByAttributes(String query);
+
+  /**
+   * Get the restaurants serving an item whose name contains the query, restaurants serving an
+   * item with exactly that name first.
+   */
+  List<RestaurantEntity> findRestaurantEntitiesByItemName(String query);
+
+  /**
+   * Get the restaurants serving an item having an attribute which contains the query.
+   */
+  List<RestaurantEntity> findRestaurantEntitiesByItemAttributes(String query);
+
+  /**
+   * Whether {@link #findRestaurantEntitiesByAllTiers(String)} costs about as much as a single
+   * tier, so that a search which is about to run every tier should run them together.
+   */
+  default boolean searchesAllTiersAtOnce() {
+    return false;
+  }
+
+  /**
+   * Get the matches of every tier, keyed by the tier they came from.
+   */
+  default Map<SearchTier, List<RestaurantEntity>> findRestaurantEntitiesByAllTiers(String query) {
+    Map<SearchTier, List<RestaurantEntity>> restaurantEntitiesByTier =
+        new EnumMap<>(SearchTier.class);
+    restaurantEntitiesByTier.put(SearchTier.NAME, findRestaurantEntitiesByName(query));
+    restaurantEntitiesByTier.put(SearchTier.ATTRIBUTES, findRestaurantEntitiesByAttributes(query));
+    restaurantEntitiesByTier.put(SearchTier.ITEM_NAME, findRestaurantEntitiesByItemName(query));
+    restaurantEntitiesByTier.put(SearchTier.ITEM_ATTRIBUTES,
+        findRestaurantEntitiesByItemAttributes(query));
+    return restaurantEntitiesByTier;
+  }
+
+}
@@ -0,0 +1,48 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.repositoryservices;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import java.io.IOException;
+import org.springframework.stereotype.Component;
+
+/**
+ * Binary JSON (Smile). Field names repeated for every restaurant of a list are written once
+ * and referenced afterwards, and numbers are stored in binary.
+ */
+@Component
+public class SmileCacheCodec implements CacheCodec {
+
+  // Entries written by a newer version of the entities must still be readable.
+  private final ObjectMapper smileMapper = new ObjectMapper(new SmileFactory())
+      .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+  @Override
+  public String getName() {
+    return "smile";
+  }
+
+  @Override
+  public byte getFormatTag() {
+    return 0x02;
+  }
+
+  @Override
+  public byte[] encode(Object value) throws IOException {
+    return smileMapper.writeValueAsBytes(value);
+  }
+
+  @Override
+  public <T> T decode(byte[] bytes, int offset, int length, TypeReference<T> type)
+      throws IOException {
+    return smileMapper.readValue(bytes, offset, length, type);
+  }
+
+}
@@ -7,9 +7,15 @@
 
 package com.crio.qeats.services;
 
+import com.crio.qeats.dto.Restaurant;
 import com.crio.qeats.exchanges.GetRestaurantsRequest;
 import com.crio.qeats.exchanges.GetRestaurantsResponse;
+import com.crio.qeats.exchanges.GetSuggestionsRequest;
+import com.crio.qeats.exchanges.GetSuggestionsResponse;
 import java.time.LocalTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 public interface RestaurantService {
 
@@ -44,7 +50,10 @@ public interface RestaurantService {
    * - service radius is 3KMs.
    * - All other times, serving radius is 5KMs.
    * - If there are no restaurants, return empty list of restaurants.
-   * @param getRestaurantsRequest valid lat/long and searchFor
+   * - A restaurant is present once, in its best tier (compared by restaurantId).
+   * - With a limit, at most limit restaurants from the cursor on, and nextCursor unless this is
+   *   the last page. Tiers which cannot reach the page are not queried.
+   * @param getRestaurantsRequest valid lat/long and searchFor, optional limit and cursor
    * @return GetRestaurantsResponse object containing a list of open restaurants or an
    *     empty list if none fits the criteria.
    */
@@ -62,4 +71,37 @@ public interface RestaurantService {
    */
   GetRestaurantsResponse findRestaurantsBySearchQueryMt(
       GetRestaurantsRequest getRestaurantsRequest, LocalTime currentTime);
+
+  /**
+   * Identical input and output to {@link #findRestaurantsBySearchQueryMt}, without blocking the
+   * calling thread: the search tiers run on the repository executor and the response completes
+   * on the thread finishing the last of them.
+   * - The tiers not done by qeats.search.deadline-ms are left out, and the response is then
+   *   flagged partial.
+   * @param getRestaurantsRequest valid lat/long with searchFor string
+   * @param currentTime current time
+   * @return future completed with the response, or exceptionally if a search tier failed
+   *     before the deadline.
+   */
+  CompletableFuture<GetRestaurantsResponse> findRestaurantsBySearchQueryAsync(
+      GetRestaurantsRequest getRestaurantsRequest, LocalTime currentTime);
+
+  /**
+   * Same restaurants, in the same order, as {@link #findRestaurantsBySearchQuery} when the
+   * request has a searchFor, else as {@link #findAllRestaurantsCloseBy}, handed over in batches
+   * as soon as each search tier produced them.
+   * @param getRestaurantsRequest valid lat/long, optional searchFor, limit and cursor
+   * @param batchConsumer called with each non empty batch of restaurants, in order
+   */
+  void streamRestaurants(GetRestaurantsRequest getRestaurantsRequest, LocalTime currentTime,
+      Consumer<List<Restaurant>> batchConsumer);
+
+  /**
+   * Get type-ahead suggestions of restaurant names, cuisines and dishes.
+   * - Any word of a suggestion can start with the prefix, matching ignores case.
+   * - Most popular first, around latitude/longitude if they are given.
+   * @param getSuggestionsRequest prefix, optional lat/long and limit
+   * @return GetSuggestionsResponse object containing at most limit suggestions.
+   */
+  GetSuggestionsResponse findSuggestions(GetSuggestionsRequest getSuggestionsRequest);
 }
@@ -10,9 +10,16 @@ package com.crio.qeats.services;
 import com.crio.qeats.dto.Restaurant;
 import com.crio.qeats.exchanges.GetRestaurantsRequest;
 import com.crio.qeats.exchanges.GetRestaurantsResponse;
+import com.crio.qeats.exchanges.GetSuggestionsRequest;
+import com.crio.qeats.exchanges.GetSuggestionsResponse;
+import com.crio.qeats.repositoryservices.AutocompleteIndex;
 import com.crio.qeats.repositoryservices.RestaurantRepositoryService;
+import com.crio.qeats.utils.Deadline;
+import com.crio.qeats.utils.RankedMerge;
 import java.time.LocalTime;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
@@ -21,14 +28,25 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import lombok.extern.log4j.Log4j2;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 @Service
@@ -51,6 +69,45 @@ public class RestaurantServiceImpl implements RestaurantService {
   @Qualifier("restaurantRepositoryServiceImpl")
   private RestaurantRepositoryService restaurantRepositoryService;
 
+  @Autowired
+  private AutocompleteIndex autocompleteIndex;
+
+  @Value("${qeats.search.fuzzy.enabled:false}")
+  private boolean fuzzySearchEnabled;
+
+  // Searches finding fewer restaurants than this also get the typo tolerant matches.
+  @Value("${qeats.search.fuzzy.min-matches:1}")
+  private int fuzzySearchMinMatches;
+
+  // Stands for the results of a search tier which missed the deadline, told apart by identity.
+  private static final List<Restaurant> MISSED_DEADLINE = Collections.unmodifiableList(new ArrayList<>());
+
+  // Time given to the search tiers of a concurrent search, the tiers missing it are left out.
+  @Value("${qeats.search.deadline-ms:1000}")
+  private long searchDeadlineInMs;
+
+  @Autowired
+  @Qualifier("restaurantTaskExecutor")
+  private Executor restaurantTaskExecutor;
+
+  // Signals the deadlines, the searches missing them go on in restaurantTaskExecutor, or on
+  // this thread when it rejects them.
+  private final ScheduledThreadPoolExecutor deadlineTimer = new ScheduledThreadPoolExecutor(1, task -> {
+    Thread thread = new Thread(task, "search-deadline");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  @PostConstruct
+  public void start() {
+    deadlineTimer.setRemoveOnCancelPolicy(true);
+  }
+
+  @PreDestroy
+  public void stop() {
+    deadlineTimer.shutdownNow();
+  }
+
 
   // TODO: CRIO_TASK_MODULE_RESTAURANTSAPI - Implement findAllRestaurantsCloseby.
   // Check RestaurantService.java file for the interface contract.
@@ -104,19 +161,112 @@ public class RestaurantServiceImpl implements RestaurantService {
       if(searchString == null || searchString.isEmpty())
         return new GetRestaurantsResponse(new ArrayList<>());
       Double servingRadiusInKms = getServingRadiusInKms(currentTime);
-      List<Restaurant> list1 = restaurantRepositoryService.findRestaurantsByName(latitude, longitude, searchString, currentTime, servingRadiusInKms);
-      List<Restaurant> list2 = restaurantRepositoryService.findRestaurantsByAttributes(latitude, longitude, searchString, currentTime, servingRadiusInKms);
-      List<Restaurant> list3 = restaurantRepositoryService.findRestaurantsByItemName(latitude, longitude, searchString, currentTime, servingRadiusInKms);
-      List<Restaurant> list4 = restaurantRepositoryService.findRestaurantsByItemAttributes(latitude, longitude, searchString, currentTime, servingRadiusInKms);
 
-      return new GetRestaurantsResponse(getOrderedRestaurantsList(list1, list2, list3, list4));
+      // Each tier is only queried if its matches can still make the page.
+      List<Supplier<List<Restaurant>>> tiers = getSearchTiers(latitude, longitude, searchString, currentTime, servingRadiusInKms);
+      RankedMerge<Restaurant> rankedMerge = newRankedMerge(getRestaurantsRequest);
+      for (int tier = 0; tier < tiers.size(); tier++) {
+        double weight = tiers.size() - tier;
+        if (rankedMerge.isComplete(weight)) {
+          break;
+        }
+        rankedMerge.add(tiers.get(tier).get(), weight);
+      }
+
+      return getPage(addFuzzyMatches(rankedMerge, latitude, longitude, searchString, currentTime, servingRadiusInKms), getRestaurantsRequest);
       //return findRestaurantsBySearchQueryMt(getRestaurantsRequest, currentTime); //Just for the Multithreading module
   }
 
-  private List<Restaurant> getOrderedRestaurantsList(List<Restaurant> list1, List<Restaurant> list2, List<Restaurant> list3, List<Restaurant> list4) {
+  // Tiers best first.
+  private List<Supplier<List<Restaurant>>> getSearchTiers(Double latitude, Double longitude, String searchString, LocalTime currentTime, Double servingRadiusInKms) {
+    return Arrays.asList(
+        () -> restaurantRepositoryService.findRestaurantsByName(latitude, longitude, searchString, currentTime, servingRadiusInKms),
+        () -> restaurantRepositoryService.findRestaurantsByAttributes(latitude, longitude, searchString, currentTime, servingRadiusInKms),
+        () -> restaurantRepositoryService.findRestaurantsByItemName(latitude, longitude, searchString, currentTime, servingRadiusInKms),
+        () -> restaurantRepositoryService.findRestaurantsByItemAttributes(latitude, longitude, searchString, currentTime, servingRadiusInKms));
+  }
+
+  @Override
+  public void streamRestaurants(GetRestaurantsRequest getRestaurantsRequest, LocalTime currentTime, Consumer<List<Restaurant>> batchConsumer) {
+
+      Double latitude = getRestaurantsRequest.getLatitude();
+      Double longitude = getRestaurantsRequest.getLongitude();
+      String searchString = getRestaurantsRequest.getSearchFor();
+      if (searchString == null) {
+        batchConsumer.accept(findAllRestaurantsCloseBy(getRestaurantsRequest, currentTime).getRestaurants());
+        return;
+      }
+      if (searchString.isEmpty()) {
+        return;
+      }
+      Double servingRadiusInKms = getServingRadiusInKms(currentTime);
 
-    return Stream.of(list1, list2, list3, list4).flatMap(List::stream).distinct().collect(Collectors.toList());
+      // Restaurants of each tier which were not in a previous one, until the page is full.
+      Set<String> seenRestaurantIds = new HashSet<>();
+      int toSkip = getOffset(getRestaurantsRequest);
+      long remaining = getLimit(getRestaurantsRequest);
+      List<Supplier<List<Restaurant>>> tiers = new ArrayList<>(getSearchTiers(latitude, longitude, searchString, currentTime, servingRadiusInKms));
+      if (fuzzySearchEnabled) {
+        tiers.add(() -> seenRestaurantIds.size() >= fuzzySearchMinMatches ? null
+            : restaurantRepositoryService.findRestaurantsByFuzzyMatch(latitude, longitude, searchString, currentTime, servingRadiusInKms));
+      }
+      for (int tier = 0; tier < tiers.size() && remaining > 0; tier++) {
+        List<Restaurant> restaurants = tiers.get(tier).get();
+        if (restaurants == null) {
+          continue;
+        }
+        List<Restaurant> batch = new ArrayList<>();
+        for (Restaurant restaurant : restaurants) {
+          if (remaining == 0 || !seenRestaurantIds.add(restaurant.getRestaurantId())) {
+            continue;
+          }
+          if (toSkip > 0) {
+            toSkip--;
+          } else {
+            batch.add(restaurant);
+            remaining--;
+          }
+        }
+        if (!batch.isEmpty()) {
+          batchConsumer.accept(batch);
+        }
+      }
+  }
 
+  // A restaurant is present once, in its best tier, compared by restaurantId only. Only the
+  // restaurants up to the end of the requested page, plus one telling whether there is a next
+  // page, are kept.
+  private RankedMerge<Restaurant> newRankedMerge(GetRestaurantsRequest getRestaurantsRequest) {
+    long pageEnd = (long) getOffset(getRestaurantsRequest) + getLimit(getRestaurantsRequest);
+    return new RankedMerge<>((int) Math.min(pageEnd + 1, Integer.MAX_VALUE), Restaurant::getRestaurantId);
+  }
+
+  private int getOffset(GetRestaurantsRequest getRestaurantsRequest) {
+    return getRestaurantsRequest.getCursor() == null ? 0 : Integer.parseInt(getRestaurantsRequest.getCursor());
+  }
+
+  private int getLimit(GetRestaurantsRequest getRestaurantsRequest) {
+    return getRestaurantsRequest.getLimit() == null ? Integer.MAX_VALUE : getRestaurantsRequest.getLimit();
+  }
+
+  private GetRestaurantsResponse getPage(RankedMerge<Restaurant> rankedMerge, GetRestaurantsRequest getRestaurantsRequest) {
+    List<Restaurant> restaurants = rankedMerge.getResults();
+    int offset = Math.min(getOffset(getRestaurantsRequest), restaurants.size());
+    int pageEnd = (int) Math.min((long) offset + getLimit(getRestaurantsRequest), restaurants.size());
+    GetRestaurantsResponse getRestaurantsResponse = new GetRestaurantsResponse(new ArrayList<>(restaurants.subList(offset, pageEnd)));
+    if (pageEnd < restaurants.size()) {
+      getRestaurantsResponse.setNextCursor(String.valueOf(pageEnd));
+    }
+    return getRestaurantsResponse;
+  }
+
+  // The fuzzy tier comes last and only runs when the other tiers found too little, so that a
+  // misspelt search still finds something without slowing down the others.
+  private RankedMerge<Restaurant> addFuzzyMatches(RankedMerge<Restaurant> rankedMerge, Double latitude, Double longitude, String searchString, LocalTime currentTime, Double servingRadiusInKms) {
+    if (!fuzzySearchEnabled || rankedMerge.size() >= fuzzySearchMinMatches) {
+      return rankedMerge;
+    }
+    return rankedMerge.add(restaurantRepositoryService.findRestaurantsByFuzzyMatch(latitude, longitude, searchString, currentTime, servingRadiusInKms), 0);
   }
 
   // TODO: CRIO_TASK_MODULE_MULTITHREADING
@@ -127,34 +277,91 @@ public class RestaurantServiceImpl implements RestaurantService {
   public GetRestaurantsResponse findRestaurantsBySearchQueryMt(
       GetRestaurantsRequest getRestaurantsRequest, LocalTime currentTime) {
 
+      return findRestaurantsBySearchQueryAsync(getRestaurantsRequest, currentTime).join();
+  }
+
+  @Override
+  public CompletableFuture<GetRestaurantsResponse> findRestaurantsBySearchQueryAsync(
+      GetRestaurantsRequest getRestaurantsRequest, LocalTime currentTime) {
+
       Double latitude = getRestaurantsRequest.getLatitude();
       Double longitude = getRestaurantsRequest.getLongitude();
       String searchString = getRestaurantsRequest.getSearchFor();
       if(searchString == null || searchString.isEmpty())
-        return new GetRestaurantsResponse(new ArrayList<>());
+        return CompletableFuture.completedFuture(new GetRestaurantsResponse(new ArrayList<>()));
       Double servingRadiusInKms = getServingRadiusInKms(currentTime);
-      
 
-     return new GetRestaurantsResponse(getOrderedRestaurantsListMt(latitude, longitude, searchString, currentTime, servingRadiusInKms));
+      // The tiers, and the queries they run, get the deadline through the executor they run on.
+      Deadline deadline = Deadline.after(searchDeadlineInMs, TimeUnit.MILLISECONDS);
+      AtomicBoolean partial = new AtomicBoolean();
+      return deadline.call(() -> getRankedMergeMt(newRankedMerge(getRestaurantsRequest), latitude, longitude, searchString, currentTime, servingRadiusInKms, deadline, partial))
+          .thenApply(rankedMerge -> {
+            GetRestaurantsResponse getRestaurantsResponse = getPage(addFuzzyMatches(rankedMerge, latitude, longitude, searchString, currentTime, servingRadiusInKms), getRestaurantsRequest);
+            if (partial.get()) {
+              log.info("Search for {} left out the tiers missing its {}ms deadline", searchString, searchDeadlineInMs);
+              getRestaurantsResponse.setPartial(true);
+            }
+            return getRestaurantsResponse;
+          });
   }
 
-  private List<Restaurant> getOrderedRestaurantsListMt(Double latitude, Double longitude, String searchString, LocalTime currentTime, Double servingRadiusInKms) {
-
-    List<Restaurant> list1, list2, list3, list4;
-    CompletableFuture<List<Restaurant>> list1Future = restaurantRepositoryService.findRestaurantsByNameMt(latitude, longitude, searchString, currentTime, servingRadiusInKms);
-    CompletableFuture<List<Restaurant>> list2Future = restaurantRepositoryService.findRestaurantsByAttributesMt(latitude, longitude, searchString, currentTime, servingRadiusInKms);
-    CompletableFuture<List<Restaurant>> list3Future = restaurantRepositoryService.findRestaurantsByItemNameMt(latitude, longitude, searchString, currentTime, servingRadiusInKms);
-    CompletableFuture<List<Restaurant>> list4Future = restaurantRepositoryService.findRestaurantsByItemAttributesMt(latitude, longitude, searchString, currentTime, servingRadiusInKms);
+  // Every tier is queried at once, so none is skipped, but the merge still only keeps the page.
+  // No thread waits for the tiers: each one is merged, in tier order, by the thread completing
+  // it or the previous one. Tiers missing the deadline are left out and set partial.
+  private CompletableFuture<RankedMerge<Restaurant>> getRankedMergeMt(RankedMerge<Restaurant> rankedMerge, Double latitude, Double longitude, String searchString, LocalTime currentTime, Double servingRadiusInKms, Deadline deadline, AtomicBoolean partial) {
+
+    List<CompletableFuture<List<Restaurant>>> tierFutures = Arrays.asList(
+        restaurantRepositoryService.findRestaurantsByNameMt(latitude, longitude, searchString, currentTime, servingRadiusInKms),
+        restaurantRepositoryService.findRestaurantsByAttributesMt(latitude, longitude, searchString, currentTime, servingRadiusInKms),
+        restaurantRepositoryService.findRestaurantsByItemNameMt(latitude, longitude, searchString, currentTime, servingRadiusInKms),
+        restaurantRepositoryService.findRestaurantsByItemAttributesMt(latitude, longitude, searchString, currentTime, servingRadiusInKms));
+
+    CompletableFuture<RankedMerge<Restaurant>> merged = CompletableFuture.completedFuture(rankedMerge);
+    for (int tier = 0; tier < tierFutures.size(); tier++) {
+      double weight = tierFutures.size() - tier;
+      merged = merged.thenCombine(withinDeadline(tierFutures.get(tier), deadline), (merge, restaurants) -> {
+        if (restaurants == MISSED_DEADLINE) {
+          partial.set(true);
+          return merge;
+        }
+        return merge.add(restaurants, weight);
+      });
+    }
+    return merged;
 
-    CompletableFuture.allOf(list1Future, list2Future, list3Future, list4Future).join();
-
-    list1 = list1Future.join();
-    list2 = list2Future.join();
-    list3 = list3Future.join();
-    list4 = list4Future.join();
+  }
 
-    return getOrderedRestaurantsList(list1, list2, list3, list4);
+  // The tier's restaurants, or MISSED_DEADLINE once the deadline passed without them. A tier
+  // failing after the deadline, eg: when MongoDB cut its query at maxTimeMS, missed it too. A
+  // late tier keeps running, and still fills the search cache for the next searches.
+  private CompletableFuture<List<Restaurant>> withinDeadline(CompletableFuture<List<Restaurant>> tierFuture, Deadline deadline) {
+    CompletableFuture<List<Restaurant>> boundedFuture = new CompletableFuture<>();
+    ScheduledFuture<?> timeout = deadlineTimer.schedule(() -> {
+      try {
+        restaurantTaskExecutor.execute(() -> boundedFuture.complete(MISSED_DEADLINE));
+      } catch (RejectedExecutionException e) {
+        // The executor is saturated, which is when the deadline matters most: merge right here.
+        boundedFuture.complete(MISSED_DEADLINE);
+      }
+    }, deadline.getRemaining(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
+    tierFuture.whenComplete((restaurants, throwable) -> {
+      timeout.cancel(false);
+      if (throwable == null) {
+        boundedFuture.complete(restaurants);
+      } else if (!deadline.isExpired()) {
+        boundedFuture.completeExceptionally(throwable);
+      } else {
+        boundedFuture.complete(MISSED_DEADLINE);
+      }
+    });
+    return boundedFuture;
+  }
 
+  @Override
+  public GetSuggestionsResponse findSuggestions(GetSuggestionsRequest getSuggestionsRequest) {
+    return new GetSuggestionsResponse(autocompleteIndex.suggest(
+        getSuggestionsRequest.getPrefix(), getSuggestionsRequest.getLatitude(),
+        getSuggestionsRequest.getLongitude(), getSuggestionsRequest.getLimit()));
   }
 
 
@@ -0,0 +1,88 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.utils;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * The time by which the work of a request must be done.
+ *   - The deadline of the work running on a thread is {@link #current()}, set by
+ *     {@link #call(Supplier)}. Tasks submitted meanwhile to an executor decorated with
+ *     {@link #propagate(Runnable)} run with it too, so that queries deep down can bound
+ *     themselves (eg: MongoDB's maxTimeMS) without every signature carrying it.
+ *   - Based on {@link System#nanoTime()}, unaffected by clock changes.
+ */
+public final class Deadline {
+
+  private static final ThreadLocal<Deadline> CURRENT = new ThreadLocal<>();
+
+  private final long deadlineNanos;
+
+  private Deadline(long deadlineNanos) {
+    this.deadlineNanos = deadlineNanos;
+  }
+
+  public static Deadline after(long timeout, TimeUnit unit) {
+    return new Deadline(System.nanoTime() + unit.toNanos(timeout));
+  }
+
+  /**
+   * Get the deadline of the work running on this thread, or null if it has none.
+   */
+  public static Deadline current() {
+    return CURRENT.get();
+  }
+
+  /**
+   * Get the time left, 0 once the deadline passed.
+   */
+  public long getRemaining(TimeUnit unit) {
+    return unit.convert(Math.max(0, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+  }
+
+  public boolean isExpired() {
+    return deadlineNanos - System.nanoTime() <= 0;
+  }
+
+  /**
+   * Runs the supplier with this deadline as the current one.
+   */
+  public <T> T call(Supplier<T> supplier) {
+    Deadline previous = CURRENT.get();
+    CURRENT.set(this);
+    try {
+      return supplier.get();
+    } finally {
+      restore(previous);
+    }
+  }
+
+  /**
+   * Wraps a task being submitted so that it runs with the deadline current at submission, as a
+   * {@link org.springframework.core.task.TaskDecorator}.
+   */
+  public static Runnable propagate(Runnable task) {
+    Deadline deadline = CURRENT.get();
+    if (deadline == null) {
+      return task;
+    }
+    return () -> deadline.call(() -> {
+      task.run();
+      return null;
+    });
+  }
+
+  private static void restore(Deadline previous) {
+    if (previous == null) {
+      CURRENT.remove();
+    } else {
+      CURRENT.set(previous);
+    }
+  }
+
+}
@@ -0,0 +1,79 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.utils;
+
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Approximate counts of the most frequent keys, in bounded memory.
+ *   - Counts are incremented concurrently. Once more than twice the capacity of keys are
+ *     tracked, only the capacity with the highest counts are kept, so a key has to come back
+ *     often to stay.
+ *   - {@link #decay(double)} scales every count down, so that past traffic fades out.
+ */
+public final class DecayingTopK<K> {
+
+  private final int capacity;
+  private final Map<K, Double> counts = new ConcurrentHashMap<>();
+
+  public DecayingTopK(int capacity) {
+    this.capacity = capacity;
+  }
+
+  public void add(K key) {
+    add(key, 1.0);
+  }
+
+  public void add(K key, double weight) {
+    counts.merge(key, weight, Double::sum);
+    if (counts.size() > 2 * capacity) {
+      prune();
+    }
+  }
+
+  /**
+   * Multiplies every count by the given factor, forgetting keys whose count falls below 1.
+   */
+  public synchronized void decay(double factor) {
+    counts.replaceAll((key, count) -> count * factor);
+    counts.values().removeIf(count -> count < 1.0);
+  }
+
+  /**
+   * Get the keys with the highest counts.
+   * @return up to limit keys with their counts, highest first
+   */
+  public Map<K, Double> top(int limit) {
+    return counts.entrySet().stream()
+        .sorted(Map.Entry.<K, Double>comparingByValue().reversed())
+        .limit(limit)
+        .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue,
+            (first, second) -> first, LinkedHashMap::new));
+  }
+
+  public int size() {
+    return counts.size();
+  }
+
+  private synchronized void prune() {
+    if (counts.size() <= 2 * capacity) {
+      return;
+    }
+    List<K> coldest = counts.entrySet().stream()
+        .sorted(Map.Entry.comparingByValue(Comparator.naturalOrder()))
+        .limit(counts.size() - capacity)
+        .map(Map.Entry::getKey)
+        .collect(Collectors.toList());
+    coldest.forEach(counts::remove);
+  }
+
+}
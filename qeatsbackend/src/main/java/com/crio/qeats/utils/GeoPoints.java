@@ -0,0 +1,57 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.utils;
+
+/**
+ * Immutable structure-of-arrays of coordinates, with the radians and cosine of the latitude
+ * computed once so that filtering them by radius only costs two sin per bounding box hit.
+ */
+public class GeoPoints {
+
+  public static final GeoPoints EMPTY = new GeoPoints(new double[0], new double[0]);
+
+  private final double[] latitudes;
+  private final double[] longitudes;
+  private final double[] latitudesInRadians;
+  private final double[] longitudesInRadians;
+  private final double[] cosLatitudes;
+
+  public GeoPoints(double[] latitudes, double[] longitudes) {
+    if (latitudes.length != longitudes.length) {
+      throw new IllegalArgumentException("latitudes and longitudes differ in length");
+    }
+    int size = latitudes.length;
+    this.latitudes = latitudes;
+    this.longitudes = longitudes;
+    this.latitudesInRadians = new double[size];
+    this.longitudesInRadians = new double[size];
+    this.cosLatitudes = new double[size];
+    for (int i = 0; i < size; i++) {
+      latitudesInRadians[i] = Math.toRadians(latitudes[i]);
+      longitudesInRadians[i] = Math.toRadians(longitudes[i]);
+      cosLatitudes[i] = Math.cos(latitudesInRadians[i]);
+    }
+  }
+
+  public int size() {
+    return latitudes.length;
+  }
+
+  public double getLatitude(int index) {
+    return latitudes[index];
+  }
+
+  public double getLongitude(int index) {
+    return longitudes[index];
+  }
+
+  public boolean isWithin(int index, GeoRadiusFilter filter) {
+    return filter.isWithinBoundingBox(latitudes[index], longitudes[index])
+        && filter.contains(latitudesInRadians[index], longitudesInRadians[index],
+            cosLatitudes[index]);
+  }
+}
@@ -0,0 +1,94 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.utils;
+
+/**
+ * Precomputed "is this point within the radius" test for one query location.
+ *   - A bounding box in degrees rejects most points with two comparisons.
+ *   - Points inside the box go through the haversine formula compared against
+ *     sin^2(radius / 2R), which avoids the atan2, sqrt and altitude terms of
+ *     {@link GeoUtils#findDistanceInKm}. The result is the same as
+ *     {@code findDistanceInKm(...) < radiusInKms}.
+ * Evaluating a point does not allocate.
+ */
+public class GeoRadiusFilter {
+
+  // Same radius as GeoUtils.findDistanceInKm.
+  private static final double EARTH_RADIUS_IN_KMS = 6371;
+  // Keeps rounding from rejecting points the haversine test would accept.
+  private static final double BOUNDING_BOX_SLACK_IN_DEGREES = 1e-9;
+
+  private final double latitude;
+  private final double longitude;
+  private final double latitudeInRadians;
+  private final double longitudeInRadians;
+  private final double cosLatitude;
+  private final double latitudeDelta;
+  private final double longitudeDelta;
+  private final double maxHaversine;
+
+  public GeoRadiusFilter(double latitude, double longitude, double radiusInKms) {
+    this.latitude = latitude;
+    this.longitude = longitude;
+    this.latitudeInRadians = Math.toRadians(latitude);
+    this.longitudeInRadians = Math.toRadians(longitude);
+    this.cosLatitude = Math.cos(latitudeInRadians);
+
+    double angularRadius = radiusInKms / EARTH_RADIUS_IN_KMS;
+    this.latitudeDelta = Math.toDegrees(angularRadius) + BOUNDING_BOX_SLACK_IN_DEGREES;
+    this.longitudeDelta = getLongitudeDelta(latitudeInRadians, angularRadius);
+
+    double sinHalfAngle = Math.sin(Math.min(angularRadius, Math.PI) / 2);
+    this.maxHaversine = angularRadius >= Math.PI
+        ? Double.POSITIVE_INFINITY : sinHalfAngle * sinHalfAngle;
+  }
+
+  /**
+   * Largest longitude difference, in degrees, of a point within the angular radius.
+   */
+  static double getLongitudeDelta(double latitudeInRadians, double angularRadius) {
+    if (angularRadius >= Math.PI / 2 - Math.abs(latitudeInRadians)) {
+      // The circle contains a pole.
+      return 180.0;
+    }
+    return Math.toDegrees(Math.asin(Math.sin(angularRadius) / Math.cos(latitudeInRadians)))
+        + BOUNDING_BOX_SLACK_IN_DEGREES;
+  }
+
+  public boolean isWithinBoundingBox(double pointLatitude, double pointLongitude) {
+    if (Math.abs(pointLatitude - latitude) > latitudeDelta) {
+      return false;
+    }
+    double lonDistance = Math.abs(pointLongitude - longitude);
+    if (lonDistance > 180.0) {
+      lonDistance = 360.0 - lonDistance;
+    }
+    return lonDistance <= longitudeDelta;
+  }
+
+  public boolean contains(double pointLatitude, double pointLongitude) {
+    if (!isWithinBoundingBox(pointLatitude, pointLongitude)) {
+      return false;
+    }
+    double pointLatitudeInRadians = Math.toRadians(pointLatitude);
+    return contains(pointLatitudeInRadians, Math.toRadians(pointLongitude),
+        Math.cos(pointLatitudeInRadians));
+  }
+
+  /**
+   * Haversine test of a point whose radians and cosine of latitude are precomputed.
+   * Does not apply the bounding box.
+   */
+  public boolean contains(double pointLatitudeInRadians, double pointLongitudeInRadians,
+      double pointCosLatitude) {
+    double sinHalfLatDistance = Math.sin((pointLatitudeInRadians - latitudeInRadians) / 2);
+    double sinHalfLonDistance = Math.sin((pointLongitudeInRadians - longitudeInRadians) / 2);
+    double haversine = sinHalfLatDistance * sinHalfLatDistance
+        + cosLatitude * pointCosLatitude * sinHalfLonDistance * sinHalfLonDistance;
+    return haversine < maxHaversine;
+  }
+}
@@ -7,6 +7,10 @@
 
 package com.crio.qeats.utils;
 
+import ch.hsr.geohash.BoundingBox;
+import ch.hsr.geohash.GeoHash;
+import java.util.ArrayList;
+import java.util.List;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 
@@ -14,11 +18,51 @@ import lombok.Data;
 @AllArgsConstructor
 public class GeoUtils {
 
+  private static final double KMS_PER_DEGREE_OF_LATITUDE = 111.195;
+
   public static double findDistanceInKm(double srcLatitude, double srcLongitude,
       double dstLatitude, double dstLongitude) {
     return distance(srcLatitude, dstLatitude, srcLongitude, dstLongitude, 0, 0);
   }
 
+  /**
+   * Get the geohashes of all the cells overlapping the bounding box of the given circle.
+   * @param radiusInKms radius of the circle
+   * @param precision number of characters of the returned geohashes
+   * @return geohashes from the south-west corner, row by row
+   */
+  public static List<String> getCoveringGeoHashes(double latitude, double longitude,
+      double radiusInKms, int precision) {
+    double latDelta = radiusInKms / KMS_PER_DEGREE_OF_LATITUDE;
+    double lonDelta = GeoRadiusFilter.getLongitudeDelta(Math.toRadians(latitude),
+        Math.toRadians(latDelta));
+
+    double minLat = Math.max(-90.0, latitude - latDelta);
+    double maxLat = Math.min(90.0, latitude + latDelta);
+    double minLon = Math.max(-180.0, longitude - lonDelta);
+    double maxLon = Math.min(180.0, longitude + lonDelta);
+
+    List<String> geoHashes = new ArrayList<>();
+    GeoHash rowStart = GeoHash.withCharacterPrecision(minLat, minLon, precision);
+    while (true) {
+      GeoHash cell = rowStart;
+      while (true) {
+        geoHashes.add(cell.toBase32());
+        BoundingBox box = cell.getBoundingBox();
+        if (box.getMaxLon() >= maxLon || box.getMaxLon() >= 180.0) {
+          break;
+        }
+        cell = cell.getEasternNeighbour();
+      }
+      BoundingBox rowBox = rowStart.getBoundingBox();
+      if (rowBox.getMaxLat() >= maxLat || rowBox.getMaxLat() >= 90.0) {
+        break;
+      }
+      rowStart = rowStart.getNorthernNeighbour();
+    }
+    return geoHashes;
+  }
+
   /**
    * THIS IS BORROWED CODE. Calculate distance between two points in latitude and longitude taking
    * into account height difference. If you are not interested in height difference pass 0.0. Uses
@@ -0,0 +1,94 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.utils;
+
+import java.time.LocalTime;
+
+/**
+ * Opening hours parsed once into minutes of the day.
+ *   - A restaurant is open strictly after it opens and strictly before it closes.
+ *   - Closing at or before the opening time means the restaurant closes after midnight,
+ *     except when both are equal which means it never opens.
+ *   - The day is split into {@link #SLOT_IN_MINUTES} minute slots. A bitmap marks the slots
+ *     in which the restaurant is open throughout, so most checks are a single bit test and
+ *     only the slots containing the opening or closing instant compare exact times.
+ */
+public final class OpeningHours {
+
+  public static final int SLOT_IN_MINUTES = 5;
+
+  private static final int MINUTES_PER_DAY = 24 * 60;
+  private static final int SLOTS_PER_DAY = MINUTES_PER_DAY / SLOT_IN_MINUTES;
+  private static final long NANOS_PER_MINUTE = 60_000_000_000L;
+
+  private final int opensAtMinute;
+  private final int closesAtMinute;
+  private final long[] fullyOpenSlots = new long[(SLOTS_PER_DAY + 63) / 64];
+  private final long[] boundarySlots = new long[(SLOTS_PER_DAY + 63) / 64];
+
+  public OpeningHours(int opensAtMinute, int closesAtMinute) {
+    this.opensAtMinute = opensAtMinute;
+    this.closesAtMinute = closesAtMinute;
+
+    for (int slot = 0; slot < SLOTS_PER_DAY; slot++) {
+      int start = slot * SLOT_IN_MINUTES;
+      int end = start + SLOT_IN_MINUTES;
+      boolean fullyOpen;
+      boolean fullyClosed;
+      if (opensAtMinute < closesAtMinute) {
+        fullyOpen = start > opensAtMinute && end <= closesAtMinute;
+        fullyClosed = end <= opensAtMinute || start >= closesAtMinute;
+      } else if (opensAtMinute > closesAtMinute) {
+        fullyOpen = start > opensAtMinute || end <= closesAtMinute;
+        fullyClosed = start >= closesAtMinute && end <= opensAtMinute;
+      } else {
+        fullyOpen = false;
+        fullyClosed = true;
+      }
+      if (fullyOpen) {
+        fullyOpenSlots[slot >>> 6] |= 1L << slot;
+      } else if (!fullyClosed) {
+        boundarySlots[slot >>> 6] |= 1L << slot;
+      }
+    }
+  }
+
+  /**
+   * Parses opening hours in the HH:mm format used by the restaurants collection.
+   */
+  public static OpeningHours parse(String opensAt, String closesAt) {
+    LocalTime opensAtTime = LocalTime.parse(opensAt);
+    LocalTime closesAtTime = LocalTime.parse(closesAt);
+    return new OpeningHours(opensAtTime.getHour() * 60 + opensAtTime.getMinute(),
+        closesAtTime.getHour() * 60 + closesAtTime.getMinute());
+  }
+
+  public int getOpensAtMinute() {
+    return opensAtMinute;
+  }
+
+  public int getClosesAtMinute() {
+    return closesAtMinute;
+  }
+
+  public boolean isOpenAt(LocalTime time) {
+    long nanoOfDay = time.toNanoOfDay();
+    int slot = (int) (nanoOfDay / (SLOT_IN_MINUTES * NANOS_PER_MINUTE));
+    long bit = 1L << slot;
+    if ((fullyOpenSlots[slot >>> 6] & bit) != 0) {
+      return true;
+    }
+    if ((boundarySlots[slot >>> 6] & bit) == 0) {
+      return false;
+    }
+
+    boolean afterOpening = nanoOfDay > opensAtMinute * NANOS_PER_MINUTE;
+    boolean beforeClosing = nanoOfDay < closesAtMinute * NANOS_PER_MINUTE;
+    return opensAtMinute < closesAtMinute
+        ? afterOpening && beforeClosing : afterOpening || beforeClosing;
+  }
+}
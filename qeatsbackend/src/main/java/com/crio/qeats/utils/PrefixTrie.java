@@ -0,0 +1,255 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable compressed prefix trie answering "which are the best values with a key starting
+ * with this prefix".
+ *   - Chains of single-child nodes are merged into one node labelled with the whole chain, so
+ *     the trie has at most two nodes per key.
+ *   - Every node keeps the best values below it, up to the maxSuggestions given to the
+ *     builder, so a lookup only walks the prefix and costs O(prefix length + suggestions)
+ *     whatever the number of keys.
+ *   - A value can be added under several keys (eg: each word of a name), it is suggested once
+ *     with the highest score it was added with. Keys are matched as given, callers normalize
+ *     them.
+ */
+public final class PrefixTrie<T> {
+
+  private static final int[] NO_VALUES = new int[0];
+
+  private final List<T> values;
+  private final double[] scores;
+  private final Map<T, Integer> valueIds;
+  private final Node root;
+
+  private PrefixTrie(List<T> values, double[] scores, Map<T, Integer> valueIds, Node root) {
+    this.values = values;
+    this.scores = scores;
+    this.valueIds = valueIds;
+    this.root = root;
+  }
+
+  public static <T> Builder<T> builder(int maxSuggestions) {
+    return new Builder<>(maxSuggestions);
+  }
+
+  /**
+   * Get the best values having a key which starts with the prefix.
+   * @return at most limit values (and at most the builder's maxSuggestions), best first
+   */
+  public List<T> suggest(String prefix, int limit) {
+    int[] suggestedIds = find(prefix);
+    List<T> suggestions = new ArrayList<>(Math.min(limit, suggestedIds.length));
+    for (int i = 0; i < suggestedIds.length && i < limit; i++) {
+      suggestions.add(values.get(suggestedIds[i]));
+    }
+    return suggestions;
+  }
+
+  /**
+   * Get the score of a value, or 0 if it was not added.
+   */
+  public double getScore(T value) {
+    Integer valueId = valueIds.get(value);
+    return valueId == null ? 0 : scores[valueId];
+  }
+
+  public int size() {
+    return values.size();
+  }
+
+  private int[] find(String prefix) {
+    Node node = root;
+    int position = 0;
+    while (node != null) {
+      int length = Math.min(prefix.length() - position, node.label.length());
+      if (!prefix.regionMatches(position, node.label, 0, length)) {
+        return NO_VALUES;
+      }
+      position += length;
+      if (position == prefix.length()) {
+        return node.bestValueIds;
+      }
+      node = node.getChild(prefix.charAt(position));
+    }
+    return NO_VALUES;
+  }
+
+  private static final class Node {
+
+    private final String label;
+    // Sorted first characters of the children labels.
+    private final char[] childChars;
+    private final Node[] children;
+    private final int[] bestValueIds;
+
+    private Node(String label, char[] childChars, Node[] children, int[] bestValueIds) {
+      this.label = label;
+      this.childChars = childChars;
+      this.children = children;
+      this.bestValueIds = bestValueIds;
+    }
+
+    private Node getChild(char c) {
+      int i = Arrays.binarySearch(childChars, c);
+      return i < 0 ? null : children[i];
+    }
+  }
+
+  public static final class Builder<T> {
+
+    private final int maxSuggestions;
+    private final List<T> values = new ArrayList<>();
+    private final List<Double> scores = new ArrayList<>();
+    private final Map<T, Integer> valueIds = new HashMap<>();
+    private final List<String> keys = new ArrayList<>();
+    private final List<Integer> keyValueIds = new ArrayList<>();
+
+    private Builder(int maxSuggestions) {
+      this.maxSuggestions = maxSuggestions;
+    }
+
+    public Builder<T> add(String key, T value, double score) {
+      if (key.isEmpty()) {
+        return this;
+      }
+      Integer valueId = valueIds.get(value);
+      if (valueId == null) {
+        valueId = values.size();
+        valueIds.put(value, valueId);
+        values.add(value);
+        scores.add(score);
+      } else if (score > scores.get(valueId)) {
+        scores.set(valueId, score);
+      }
+      keys.add(key);
+      keyValueIds.add(valueId);
+      return this;
+    }
+
+    public PrefixTrie<T> build() {
+      double[] valueScores = scores.stream().mapToDouble(Double::doubleValue).toArray();
+      Integer[] order = new Integer[keys.size()];
+      for (int i = 0; i < order.length; i++) {
+        order[i] = i;
+      }
+      Arrays.sort(order, Comparator.comparing(keys::get));
+      String[] sortedKeys = new String[order.length];
+      int[] sortedValueIds = new int[order.length];
+      for (int i = 0; i < order.length; i++) {
+        sortedKeys[i] = keys.get(order[i]);
+        sortedValueIds[i] = keyValueIds.get(order[i]);
+      }
+
+      // Values ranked best first, so that nodes pick their best values by sorting ranks.
+      Integer[] valueIdsByRank = new Integer[valueScores.length];
+      for (int i = 0; i < valueIdsByRank.length; i++) {
+        valueIdsByRank[i] = i;
+      }
+      Arrays.sort(valueIdsByRank, (first, second) -> {
+        int byScore = Double.compare(valueScores[second], valueScores[first]);
+        return byScore != 0 ? byScore : Integer.compare(first, second);
+      });
+      int[] ranks = new int[valueIdsByRank.length];
+      for (int rank = 0; rank < ranks.length; rank++) {
+        ranks[valueIdsByRank[rank]] = rank;
+      }
+      for (int i = 0; i < sortedValueIds.length; i++) {
+        sortedValueIds[i] = ranks[sortedValueIds[i]];
+      }
+
+      Node root = sortedKeys.length == 0 ? null
+          : buildNode(sortedKeys, sortedValueIds, 0, sortedKeys.length, 0);
+      if (root != null) {
+        toValueIds(root, valueIdsByRank);
+      }
+      return new PrefixTrie<>(new ArrayList<>(values), valueScores, new HashMap<>(valueIds),
+          root);
+    }
+
+    // Builds the node of the sorted keys [from, to), which share their first depth characters.
+    // Values are identified by their rank until the whole trie is built.
+    private Node buildNode(String[] sortedKeys, int[] sortedRanks, int from, int to,
+        int depth) {
+      // Sorted keys share a prefix as long as the first and the last one do.
+      String first = sortedKeys[from];
+      String last = sortedKeys[to - 1];
+      int end = depth;
+      int maxEnd = Math.min(first.length(), last.length());
+      while (end < maxEnd && first.charAt(end) == last.charAt(end)) {
+        end++;
+      }
+
+      int[] candidateRanks = new int[Math.min(to - from, maxSuggestions) * 2];
+      int candidates = 0;
+      int i = from;
+      while (i < to && sortedKeys[i].length() == end) {
+        candidateRanks = append(candidateRanks, candidates++, sortedRanks[i++]);
+      }
+      List<Character> childChars = new ArrayList<>();
+      List<Node> children = new ArrayList<>();
+      while (i < to) {
+        char c = sortedKeys[i].charAt(end);
+        int j = i;
+        while (j < to && sortedKeys[j].charAt(end) == c) {
+          j++;
+        }
+        Node child = buildNode(sortedKeys, sortedRanks, i, j, end);
+        childChars.add(c);
+        children.add(child);
+        for (int rank : child.bestValueIds) {
+          candidateRanks = append(candidateRanks, candidates++, rank);
+        }
+        i = j;
+      }
+
+      char[] sortedChildChars = new char[childChars.size()];
+      for (int k = 0; k < sortedChildChars.length; k++) {
+        sortedChildChars[k] = childChars.get(k);
+      }
+      return new Node(first.substring(depth, end), sortedChildChars,
+          children.toArray(new Node[0]), selectBest(candidateRanks, candidates));
+    }
+
+    private static int[] append(int[] array, int size, int value) {
+      int[] grown = size < array.length ? array : Arrays.copyOf(array, size * 2 + 1);
+      grown[size] = value;
+      return grown;
+    }
+
+    // The lowest distinct ranks.
+    private int[] selectBest(int[] candidateRanks, int candidates) {
+      Arrays.sort(candidateRanks, 0, candidates);
+      int[] bestRanks = new int[Math.min(candidates, maxSuggestions)];
+      int best = 0;
+      for (int i = 0; i < candidates && best < bestRanks.length; i++) {
+        if (best == 0 || bestRanks[best - 1] != candidateRanks[i]) {
+          bestRanks[best++] = candidateRanks[i];
+        }
+      }
+      return best == bestRanks.length ? bestRanks : Arrays.copyOf(bestRanks, best);
+    }
+
+    private static void toValueIds(Node node, Integer[] valueIdsByRank) {
+      for (int i = 0; i < node.bestValueIds.length; i++) {
+        node.bestValueIds[i] = valueIdsByRank[node.bestValueIds[i]];
+      }
+      for (Node child : node.children) {
+        toValueIds(child, valueIdsByRank);
+      }
+    }
+  }
+
+}
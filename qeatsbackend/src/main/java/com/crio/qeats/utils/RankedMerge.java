@@ -0,0 +1,114 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.utils;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.Function;
+
+/**
+ * The best distinct results out of several ranked lists, keeping only as many as asked for.
+ *   - A result scores the weight of its list minus its rank as a fraction of the list's length,
+ *     so the results of a list keep their order and all come before those of lighter lists.
+ *   - Results are told apart by their id alone, a result found again keeps its best score.
+ *   - The best capacity results are kept in a bounded heap, and a list stops being read as
+ *     soon as its next result could not make it. {@link #isComplete(double)} tells whether a
+ *     list needs to be computed at all.
+ */
+public final class RankedMerge<T> {
+
+  // Worst first, among equal scores the last added is the worst.
+  private static final Comparator<Ranked<?>> WORST_FIRST =
+      Comparator.<Ranked<?>>comparingDouble(ranked -> ranked.score)
+          .thenComparing(Comparator.<Ranked<?>>comparingLong(ranked -> ranked.sequence)
+              .reversed());
+
+  private final int capacity;
+  private final Function<T, String> idFunction;
+  private final PriorityQueue<Ranked<T>> kept = new PriorityQueue<>(WORST_FIRST);
+  private final Map<String, Ranked<T>> keptById = new HashMap<>();
+  private long sequence;
+
+  public RankedMerge(int capacity, Function<T, String> idFunction) {
+    this.capacity = capacity;
+    this.idFunction = idFunction;
+  }
+
+  /**
+   * Merges a list of results, best first, whose best result scores the given weight.
+   */
+  public RankedMerge<T> add(List<T> results, double weight) {
+    if (results == null) {
+      return this;
+    }
+    for (int rank = 0; rank < results.size(); rank++) {
+      double score = weight - (double) rank / results.size();
+      if (isComplete(score)) {
+        // The following results score even less.
+        break;
+      }
+      T result = results.get(rank);
+      String id = idFunction.apply(result);
+      Ranked<T> existing = keptById.get(id);
+      if (existing != null) {
+        if (existing.score >= score) {
+          continue;
+        }
+        kept.remove(existing);
+      }
+      Ranked<T> ranked = new Ranked<>(result, score, sequence++);
+      kept.add(ranked);
+      keptById.put(id, ranked);
+      if (kept.size() > capacity) {
+        keptById.remove(idFunction.apply(kept.poll().result));
+      }
+    }
+    return this;
+  }
+
+  /**
+   * Whether no result scoring at most maxScore can change the results any more, ie: lists of
+   * at most this weight can be skipped.
+   */
+  public boolean isComplete(double maxScore) {
+    return kept.size() >= capacity && (kept.isEmpty() || kept.peek().score >= maxScore);
+  }
+
+  public int size() {
+    return kept.size();
+  }
+
+  /**
+   * Get the kept results, best first.
+   */
+  public List<T> getResults() {
+    List<Ranked<T>> ranked = new ArrayList<>(kept);
+    ranked.sort(WORST_FIRST.reversed());
+    List<T> results = new ArrayList<>(ranked.size());
+    for (Ranked<T> entry : ranked) {
+      results.add(entry.result);
+    }
+    return results;
+  }
+
+  private static final class Ranked<T> {
+    private final T result;
+    private final double score;
+    private final long sequence;
+
+    private Ranked(T result, double score, long sequence) {
+      this.result = result;
+      this.score = score;
+      this.sequence = sequence;
+    }
+  }
+
+}
@@ -0,0 +1,177 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable n-gram index answering "which documents have a value containing this string".
+ *   - Every value is indexed under each of its substrings of up to {@link #GRAM_LENGTH}
+ *     characters. A longer query looks up its grams, intersects their postings and checks
+ *     the few remaining values, so the cost depends on how selective the query is and not on
+ *     the number of values.
+ *   - Documents are identified by the int given when adding their values, a document can
+ *     have any number of values. Values are matched as given, callers normalize them.
+ */
+public final class SubstringIndex {
+
+  public static final int GRAM_LENGTH = 3;
+
+  private static final int[] NO_POSTINGS = new int[0];
+
+  private final String[] values;
+  private final int[] documentIds;
+  // Ascending value ordinals, keyed by gram.
+  private final Map<String, int[]> postings;
+  // Ascending document ids, keyed by value.
+  private final Map<String, int[]> exactPostings;
+
+  private SubstringIndex(String[] values, int[] documentIds, Map<String, int[]> postings,
+      Map<String, int[]> exactPostings) {
+    this.values = values;
+    this.documentIds = documentIds;
+    this.postings = postings;
+    this.exactPostings = exactPostings;
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * Get the documents having a value which contains the query.
+   * @return ascending document ids
+   */
+  public int[] findContaining(String query) {
+    if (query.isEmpty()) {
+      return distinctDocumentIds(ordinalsOf(values.length), query);
+    }
+
+    Set<String> grams = new LinkedHashSet<>();
+    if (query.length() <= GRAM_LENGTH) {
+      grams.add(query);
+    } else {
+      for (int start = 0; start + GRAM_LENGTH <= query.length(); start++) {
+        grams.add(query.substring(start, start + GRAM_LENGTH));
+      }
+    }
+
+    int[][] gramPostings = new int[grams.size()][];
+    int i = 0;
+    for (String gram : grams) {
+      gramPostings[i++] = postings.getOrDefault(gram, NO_POSTINGS);
+    }
+    // Intersecting from the rarest gram keeps the intermediate results small.
+    Arrays.sort(gramPostings, (first, second) -> Integer.compare(first.length, second.length));
+    int[] candidates = gramPostings[0];
+    for (int j = 1; j < gramPostings.length && candidates.length > 0; j++) {
+      candidates = intersect(candidates, gramPostings[j]);
+    }
+    return distinctDocumentIds(candidates, query);
+  }
+
+  /**
+   * Get the documents having a value equal to the query.
+   * @return ascending document ids
+   */
+  public int[] findEqual(String query) {
+    return exactPostings.getOrDefault(query, NO_POSTINGS);
+  }
+
+  public int size() {
+    return values.length;
+  }
+
+  // Grams only tell which values may contain the query, the values are checked here.
+  private int[] distinctDocumentIds(int[] valueOrdinals, String query) {
+    BitSet matches = new BitSet();
+    for (int valueOrdinal : valueOrdinals) {
+      if (query.length() <= GRAM_LENGTH || values[valueOrdinal].contains(query)) {
+        matches.set(documentIds[valueOrdinal]);
+      }
+    }
+    return matches.stream().toArray();
+  }
+
+  private static int[] intersect(int[] first, int[] second) {
+    int[] intersection = new int[Math.min(first.length, second.length)];
+    int size = 0;
+    int i = 0;
+    int j = 0;
+    while (i < first.length && j < second.length) {
+      if (first[i] < second[j]) {
+        i++;
+      } else if (first[i] > second[j]) {
+        j++;
+      } else {
+        intersection[size++] = first[i];
+        i++;
+        j++;
+      }
+    }
+    return Arrays.copyOf(intersection, size);
+  }
+
+  private static int[] ordinalsOf(int count) {
+    int[] ordinals = new int[count];
+    for (int i = 0; i < count; i++) {
+      ordinals[i] = i;
+    }
+    return ordinals;
+  }
+
+  public static final class Builder {
+
+    private final List<String> values = new ArrayList<>();
+    private final List<Integer> documentIds = new ArrayList<>();
+    private final Map<String, List<Integer>> postings = new HashMap<>();
+    private final Map<String, Set<Integer>> exactPostings = new HashMap<>();
+
+    private Builder() {
+    }
+
+    public Builder add(int documentId, String value) {
+      int valueOrdinal = values.size();
+      values.add(value);
+      documentIds.add(documentId);
+
+      Set<String> grams = new HashSet<>();
+      for (int start = 0; start < value.length(); start++) {
+        for (int end = start + 1; end <= Math.min(value.length(), start + GRAM_LENGTH); end++) {
+          grams.add(value.substring(start, end));
+        }
+      }
+      for (String gram : grams) {
+        postings.computeIfAbsent(gram, key -> new ArrayList<>()).add(valueOrdinal);
+      }
+      exactPostings.computeIfAbsent(value, key -> new HashSet<>()).add(documentId);
+      return this;
+    }
+
+    public SubstringIndex build() {
+      Map<String, int[]> packedPostings = new HashMap<>(postings.size() * 2);
+      postings.forEach((gram, valueOrdinals) ->
+          packedPostings.put(gram, valueOrdinals.stream().mapToInt(Integer::intValue).toArray()));
+      Map<String, int[]> packedExactPostings = new HashMap<>(exactPostings.size() * 2);
+      exactPostings.forEach((value, ids) ->
+          packedExactPostings.put(value, ids.stream().mapToInt(Integer::intValue).sorted()
+              .toArray()));
+      return new SubstringIndex(values.toArray(new String[0]),
+          documentIds.stream().mapToInt(Integer::intValue).toArray(), packedPostings,
+          packedExactPostings);
+    }
+  }
+
+}
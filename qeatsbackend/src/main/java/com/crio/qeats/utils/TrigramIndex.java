@@ -0,0 +1,279 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable index answering "which documents have a value whose words are close to the words of
+ * this query", tolerating typos such as "biriyani" for "biryani".
+ *   - The distinct words of the values are indexed under their trigrams. Each query word takes
+ *     the words sharing enough trigrams with it as candidates, and keeps those within
+ *     {@link #getMaxEdits(int)} edits (Levenshtein) of it. A value matches when every query word
+ *     is close to one of its words.
+ *   - Work is bounded per query by a {@link Limits}: once it is used up, the words verified so
+ *     far are used and the result may miss some matches, but the query stops. The timeout also
+ *     bounds the walk of the postings which finds the candidate words.
+ *   - Documents are identified by the int given when adding their values, like
+ *     {@link SubstringIndex}. Values are matched as given, callers normalize them.
+ */
+public final class TrigramIndex {
+
+  public static final int GRAM_LENGTH = 3;
+
+  private static final String PADDING = "  ";
+  private static final int[] NO_POSTINGS = new int[0];
+  // The deadline is checked once every this many + 1 postings walked.
+  private static final int DEADLINE_CHECK_MASK = 0xFF;
+
+  private final String[] words;
+  // Ascending word ordinals, keyed by gram.
+  private final Map<String, int[]> postings;
+  // Ascending value ordinals, by word ordinal.
+  private final int[][] wordValues;
+  private final int[] documentIds;
+
+  private TrigramIndex(String[] words, Map<String, int[]> postings, int[][] wordValues,
+      int[] documentIds) {
+    this.words = words;
+    this.postings = postings;
+    this.wordValues = wordValues;
+    this.documentIds = documentIds;
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * Edits tolerated in a word of this length: none up to 2 characters, one up to 5, two above.
+   */
+  public static int getMaxEdits(int length) {
+    return length <= 2 ? 0 : length <= 5 ? 1 : 2;
+  }
+
+  /**
+   * Get the documents having a value whose words are close to every word of the query.
+   * @return document ids, closest first (fewest edits summed over the query words), then
+   *     ascending
+   */
+  public int[] findSimilar(String query, Limits limits) {
+    long deadline = System.nanoTime() + limits.timeoutNanos;
+    int[] verifications = {limits.maxVerifications};
+
+    // Summed edits, keyed by value ordinal.
+    Map<Integer, Integer> valueEdits = null;
+    for (String queryWord : new LinkedHashSet<>(Arrays.asList(query.split(" ")))) {
+      if (queryWord.isEmpty()) {
+        continue;
+      }
+      Map<Integer, Integer> wordEdits = new HashMap<>();
+      for (int[] match : findSimilarWords(queryWord, limits.maxExpansions, verifications,
+          deadline)) {
+        for (int valueOrdinal : wordValues[match[0]]) {
+          wordEdits.merge(valueOrdinal, match[1], Math::min);
+        }
+      }
+      if (valueEdits == null) {
+        valueEdits = wordEdits;
+      } else {
+        Map<Integer, Integer> previousEdits = valueEdits;
+        valueEdits = new HashMap<>();
+        for (Map.Entry<Integer, Integer> value : wordEdits.entrySet()) {
+          Integer edits = previousEdits.get(value.getKey());
+          if (edits != null) {
+            valueEdits.put(value.getKey(), edits + value.getValue());
+          }
+        }
+      }
+      if (valueEdits.isEmpty()) {
+        return NO_POSTINGS;
+      }
+    }
+    if (valueEdits == null) {
+      return NO_POSTINGS;
+    }
+
+    Map<Integer, Integer> documentEdits = new HashMap<>();
+    valueEdits.forEach((valueOrdinal, edits) ->
+        documentEdits.merge(documentIds[valueOrdinal], edits, Math::min));
+    return documentEdits.entrySet().stream()
+        .sorted(Map.Entry.<Integer, Integer>comparingByValue()
+            .thenComparing(Map.Entry.comparingByKey()))
+        .mapToInt(Map.Entry::getKey)
+        .toArray();
+  }
+
+  public int size() {
+    return documentIds.length;
+  }
+
+  // Pairs of word ordinal and edits, at most maxExpansions of them, closest first.
+  private List<int[]> findSimilarWords(String queryWord, int maxExpansions, int[] verifications,
+      long deadline) {
+    int maxEdits = getMaxEdits(queryWord.length());
+    Set<String> grams = getGrams(queryWord);
+    // Every edit changes at most GRAM_LENGTH grams, so closer words share at least this many.
+    int minSharedGrams = Math.max(1, grams.size() - maxEdits * GRAM_LENGTH);
+
+    // Counted for the words actually met, a short word's padded grams ("  b") can have postings
+    // covering much of the vocabulary, so the deadline is checked while walking them too.
+    Map<Integer, Integer> sharedGrams = new HashMap<>();
+    List<Integer> candidates = new ArrayList<>();
+    int walkedPostings = 0;
+    walk:
+    for (String gram : grams) {
+      for (int wordOrdinal : postings.getOrDefault(gram, NO_POSTINGS)) {
+        if ((++walkedPostings & DEADLINE_CHECK_MASK) == 0 && System.nanoTime() > deadline) {
+          break walk;
+        }
+        if (sharedGrams.merge(wordOrdinal, 1, Integer::sum) == minSharedGrams) {
+          candidates.add(wordOrdinal);
+        }
+      }
+    }
+
+    List<int[]> matches = new ArrayList<>();
+    for (int wordOrdinal : candidates) {
+      String word = words[wordOrdinal];
+      if (Math.abs(word.length() - queryWord.length()) > maxEdits) {
+        continue;
+      }
+      if (verifications[0] <= 0 || System.nanoTime() > deadline) {
+        break;
+      }
+      verifications[0]--;
+      int edits = getBoundedEditDistance(queryWord, word, maxEdits);
+      if (edits <= maxEdits) {
+        matches.add(new int[] {wordOrdinal, edits});
+      }
+    }
+    matches.sort((first, second) -> first[1] != second[1] ? Integer.compare(first[1], second[1])
+        : Integer.compare(first[0], second[0]));
+    return matches.size() <= maxExpansions ? matches : matches.subList(0, maxExpansions);
+  }
+
+  /**
+   * Levenshtein distance between two strings, or maxEdits + 1 as soon as it is known to be
+   * above maxEdits. Only the cells within maxEdits of the diagonal are computed.
+   */
+  public static int getBoundedEditDistance(String first, String second, int maxEdits) {
+    if (Math.abs(first.length() - second.length()) > maxEdits) {
+      return maxEdits + 1;
+    }
+    int outOfBounds = maxEdits + 1;
+    int[] previous = new int[second.length() + 1];
+    int[] current = new int[second.length() + 1];
+    for (int j = 0; j <= second.length(); j++) {
+      previous[j] = j <= maxEdits ? j : outOfBounds;
+    }
+    for (int i = 1; i <= first.length(); i++) {
+      int from = Math.max(1, i - maxEdits);
+      int to = Math.min(second.length(), i + maxEdits);
+      Arrays.fill(current, outOfBounds);
+      current[0] = i <= maxEdits ? i : outOfBounds;
+      int rowMin = current[0];
+      for (int j = from; j <= to; j++) {
+        int substitution = previous[j - 1]
+            + (first.charAt(i - 1) == second.charAt(j - 1) ? 0 : 1);
+        int edits = Math.min(substitution, Math.min(previous[j], current[j - 1]) + 1);
+        current[j] = Math.min(edits, outOfBounds);
+        rowMin = Math.min(rowMin, current[j]);
+      }
+      if (rowMin > maxEdits) {
+        return outOfBounds;
+      }
+      int[] swap = previous;
+      previous = current;
+      current = swap;
+    }
+    return previous[second.length()];
+  }
+
+  private static Set<String> getGrams(String word) {
+    String padded = PADDING + word + PADDING;
+    Set<String> grams = new HashSet<>();
+    for (int start = 0; start + GRAM_LENGTH <= padded.length(); start++) {
+      grams.add(padded.substring(start, start + GRAM_LENGTH));
+    }
+    return grams;
+  }
+
+  /**
+   * Work allowed for one query.
+   */
+  public static final class Limits {
+
+    // Close words kept per query word.
+    private final int maxExpansions;
+    // Candidate words whose edit distance is computed, over all the query words.
+    private final int maxVerifications;
+    private final long timeoutNanos;
+
+    public Limits(int maxExpansions, int maxVerifications, long timeoutNanos) {
+      this.maxExpansions = maxExpansions;
+      this.maxVerifications = maxVerifications;
+      this.timeoutNanos = timeoutNanos;
+    }
+  }
+
+  public static final class Builder {
+
+    private final Map<String, Integer> wordOrdinals = new HashMap<>();
+    private final List<Set<Integer>> wordValues = new ArrayList<>();
+    private final List<Integer> documentIds = new ArrayList<>();
+
+    private Builder() {
+    }
+
+    public Builder add(int documentId, String value) {
+      int valueOrdinal = documentIds.size();
+      documentIds.add(documentId);
+      for (String word : value.split(" ")) {
+        if (!word.isEmpty()) {
+          int wordOrdinal = wordOrdinals.computeIfAbsent(word, w -> {
+            wordValues.add(new LinkedHashSet<>());
+            return wordOrdinals.size();
+          });
+          wordValues.get(wordOrdinal).add(valueOrdinal);
+        }
+      }
+      return this;
+    }
+
+    public TrigramIndex build() {
+      String[] words = new String[wordOrdinals.size()];
+      wordOrdinals.forEach((word, wordOrdinal) -> words[wordOrdinal] = word);
+
+      Map<String, List<Integer>> postings = new HashMap<>();
+      for (int wordOrdinal = 0; wordOrdinal < words.length; wordOrdinal++) {
+        for (String gram : getGrams(words[wordOrdinal])) {
+          postings.computeIfAbsent(gram, key -> new ArrayList<>()).add(wordOrdinal);
+        }
+      }
+      Map<String, int[]> packedPostings = new HashMap<>(postings.size() * 2);
+      postings.forEach((gram, wordOrdinalList) -> packedPostings.put(gram,
+          wordOrdinalList.stream().mapToInt(Integer::intValue).toArray()));
+
+      int[][] packedWordValues = new int[words.length][];
+      for (int wordOrdinal = 0; wordOrdinal < words.length; wordOrdinal++) {
+        packedWordValues[wordOrdinal] = wordValues.get(wordOrdinal).stream()
+            .mapToInt(Integer::intValue).toArray();
+      }
+      return new TrigramIndex(words, packedPostings, packedWordValues,
+          documentIds.stream().mapToInt(Integer::intValue).toArray());
+    }
+  }
+
+}
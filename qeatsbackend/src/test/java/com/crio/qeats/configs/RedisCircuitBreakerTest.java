@@ -0,0 +1,88 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.configs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class RedisCircuitBreakerTest {
+
+  private SimpleMeterRegistry meterRegistry;
+  private RedisCircuitBreaker redisCircuitBreaker;
+
+  @BeforeEach
+  void setup() {
+    meterRegistry = new SimpleMeterRegistry();
+    redisCircuitBreaker = new RedisCircuitBreaker();
+    ReflectionTestUtils.setField(redisCircuitBreaker, "failureThreshold", 3);
+    ReflectionTestUtils.setField(redisCircuitBreaker, "openInMillis", 50L);
+    ReflectionTestUtils.setField(redisCircuitBreaker, "meterRegistry", meterRegistry);
+    redisCircuitBreaker.registerMetrics();
+  }
+
+  @Test
+  void opensAfterConsecutiveFailuresOnly() {
+    redisCircuitBreaker.recordFailure();
+    redisCircuitBreaker.recordFailure();
+    redisCircuitBreaker.recordSuccess();
+    redisCircuitBreaker.recordFailure();
+    redisCircuitBreaker.recordFailure();
+    assertTrue(redisCircuitBreaker.allowRequest());
+
+    redisCircuitBreaker.recordFailure();
+
+    assertEquals(RedisCircuitBreaker.State.OPEN, redisCircuitBreaker.getState());
+    assertFalse(redisCircuitBreaker.allowRequest());
+    assertEquals(2.0, meterRegistry.get("qeats.cache.breaker.state").gauge().value());
+  }
+
+  @Test
+  void letsASingleProbeThroughOnceOpenTimeHasPassed() throws InterruptedException {
+    openBreaker();
+    Thread.sleep(60);
+
+    assertTrue(redisCircuitBreaker.allowRequest());
+    assertEquals(RedisCircuitBreaker.State.HALF_OPEN, redisCircuitBreaker.getState());
+    assertFalse(redisCircuitBreaker.allowRequest());
+
+    redisCircuitBreaker.recordSuccess();
+    assertEquals(RedisCircuitBreaker.State.CLOSED, redisCircuitBreaker.getState());
+    assertTrue(redisCircuitBreaker.allowRequest());
+  }
+
+  @Test
+  void failedProbeReopensTheBreaker() throws InterruptedException {
+    openBreaker();
+    Thread.sleep(60);
+    assertTrue(redisCircuitBreaker.allowRequest());
+
+    redisCircuitBreaker.recordFailure();
+
+    assertEquals(RedisCircuitBreaker.State.OPEN, redisCircuitBreaker.getState());
+    assertFalse(redisCircuitBreaker.allowRequest());
+  }
+
+  @Test
+  void fallbackTimeIsRecorded() {
+    assertEquals("fallback", redisCircuitBreaker.callFallback(() -> "fallback"));
+
+    assertEquals(1, meterRegistry.get("qeats.cache.fallback").timer().count());
+  }
+
+  private void openBreaker() {
+    for (int i = 0; i < 3; i++) {
+      redisCircuitBreaker.recordFailure();
+    }
+  }
+
+}
@@ -0,0 +1,101 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.configs;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.exceptions.JedisException;
+import redis.embedded.RedisServer;
+
+class RedisConfigurationTest {
+
+  private static final int REDIS_PORT = 6392;
+
+  private RedisServer redisServer;
+  private SimpleMeterRegistry meterRegistry;
+  private RedisConfiguration redisConfiguration;
+
+  @BeforeEach
+  void setup() throws Exception {
+    redisServer = new RedisServer(REDIS_PORT);
+    redisServer.start();
+    meterRegistry = new SimpleMeterRegistry();
+    redisConfiguration = new RedisConfiguration();
+    ReflectionTestUtils.setField(redisConfiguration, "redisHost", "localhost");
+    ReflectionTestUtils.setField(redisConfiguration, "poolMaxTotal", 2);
+    ReflectionTestUtils.setField(redisConfiguration, "poolMaxIdle", 2);
+    ReflectionTestUtils.setField(redisConfiguration, "poolMinIdle", 0);
+    ReflectionTestUtils.setField(redisConfiguration, "poolMaxWaitInMillis", 50L);
+    ReflectionTestUtils.setField(redisConfiguration, "connectTimeoutInMillis", 1000);
+    ReflectionTestUtils.setField(redisConfiguration, "socketTimeoutInMillis", 1000);
+    ReflectionTestUtils.setField(redisConfiguration, "meterRegistry", meterRegistry);
+    redisConfiguration.setRedisPort(REDIS_PORT);
+    redisConfiguration.initCache();
+  }
+
+  @AfterEach
+  void teardown() {
+    redisConfiguration.closePool();
+    redisServer.stop();
+  }
+
+  @Test
+  void recordsCommandAndPipelineLatencies() {
+    try (Jedis jedis = redisConfiguration.getJedisPool().getResource()) {
+      redisConfiguration.timeCommand("set", () -> jedis.set("key", "value"));
+      List<Response<String>> responses = redisConfiguration.pipelined(jedis, "get-twice",
+          pipeline -> Arrays.asList(pipeline.get("key"), pipeline.get("key")));
+
+      assertEquals("value", responses.get(1).get());
+      assertEquals(1.0, meterRegistry.get("qeats.redis.pool.active").gauge().value());
+    }
+
+    assertEquals(1, meterRegistry.get("qeats.redis.command").tag("command", "set")
+        .timer().count());
+    assertEquals(1, meterRegistry.get("qeats.redis.command").tag("command", "get-twice")
+        .timer().count());
+    assertEquals(1, meterRegistry.get("qeats.redis.pool.borrow").timer().count());
+    assertEquals(1.0, meterRegistry.get("qeats.redis.pool.idle").gauge().value());
+  }
+
+  @Test
+  void borrowingFromAnExhaustedPoolTimesOut() {
+    try (Jedis first = redisConfiguration.getJedisPool().getResource();
+        Jedis second = redisConfiguration.getJedisPool().getResource()) {
+      assertThrows(JedisException.class, () -> redisConfiguration.getJedisPool().getResource());
+    }
+    assertTrue(meterRegistry.get("qeats.redis.pool.borrow").timer().max(
+        TimeUnit.MILLISECONDS) >= 50);
+  }
+
+  @Test
+  void destroyCacheFlushesButKeepsThePool() {
+    try (Jedis jedis = redisConfiguration.getJedisPool().getResource()) {
+      jedis.set("key", "value");
+    }
+
+    redisConfiguration.destroyCache();
+
+    try (Jedis jedis = redisConfiguration.getJedisPool().getResource()) {
+      assertNull(jedis.get("key"));
+    }
+  }
+
+}
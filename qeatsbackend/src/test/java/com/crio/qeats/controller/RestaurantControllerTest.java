@@ -7,6 +7,7 @@
 
 package com.crio.qeats.controller;
 
+import static com.crio.qeats.controller.RestaurantController.APPLICATION_NDJSON_VALUE;
 import static com.crio.qeats.controller.RestaurantController.CART_API;
 import static com.crio.qeats.controller.RestaurantController.CART_CLEAR_API;
 import static com.crio.qeats.controller.RestaurantController.CART_ITEM_API;
@@ -17,12 +18,15 @@ import static com.crio.qeats.controller.RestaurantController.RESTAURANTS_API;
 import static com.crio.qeats.controller.RestaurantController.RESTAURANT_API_ENDPOINT;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.http.MediaType.APPLICATION_JSON_UTF8;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
@@ -30,6 +34,7 @@ import static org.springframework.test.web.servlet.request.MockMvcRequestBuilder
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import com.crio.qeats.QEatsApplication;
+import com.crio.qeats.dto.Restaurant;
 import com.crio.qeats.exchanges.GetRestaurantsRequest;
 import com.crio.qeats.exchanges.GetRestaurantsResponse;
 import com.crio.qeats.services.RestaurantService;
@@ -39,8 +44,13 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import java.io.IOException;
 import java.net.URI;
 import java.time.LocalTime;
+import java.util.Collections;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
@@ -53,10 +63,12 @@ import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMock
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockAsyncContext;
 import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.ResultActions;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import org.springframework.web.util.UriComponentsBuilder;
@@ -139,6 +151,9 @@ public class RestaurantControllerTest {
     when(restaurantService
         .findAllRestaurantsCloseBy(any(GetRestaurantsRequest.class), any(LocalTime.class)))
         .thenReturn(sampleResponse);
+    when(restaurantService
+        .findRestaurantsBySearchQueryAsync(any(GetRestaurantsRequest.class), any(LocalTime.class)))
+        .thenReturn(CompletableFuture.completedFuture(sampleResponse));
 
     ArgumentCaptor<GetRestaurantsRequest> argumentCaptor = ArgumentCaptor
         .forClass(GetRestaurantsRequest.class);
@@ -160,7 +175,7 @@ public class RestaurantControllerTest {
     assertEquals(HttpStatus.OK.value(), response.getStatus());
 
     verify(restaurantService, times(1))
-        .findRestaurantsBySearchQuery(argumentCaptor.capture(), any(LocalTime.class));
+        .findRestaurantsBySearchQueryAsync(argumentCaptor.capture(), any(LocalTime.class));
 
     assertEquals("20.21", argumentCaptor.getValue().getLatitude().toString());
 
@@ -170,6 +185,71 @@ public class RestaurantControllerTest {
 
   }
 
+  @Test
+  public void searchTimingOutReturnsAnEmptyPartialListOfRestaurants() throws Exception {
+    when(restaurantService
+        .findRestaurantsBySearchQueryAsync(any(GetRestaurantsRequest.class), any(LocalTime.class)))
+        .thenReturn(new CompletableFuture<>());
+
+    URI uri = UriComponentsBuilder
+        .fromPath(RESTAURANT_API_URI)
+        .queryParam("latitude", "20.21")
+        .queryParam("longitude", "30.31")
+        .queryParam("searchFor", "Briyani")
+        .build().toUri();
+
+    MvcResult mvcResult = mvc.perform(
+        get(uri.toString()).accept(APPLICATION_JSON_UTF8)
+    ).andReturn();
+    MockAsyncContext asyncContext = (MockAsyncContext) mvcResult.getRequest().getAsyncContext();
+    for (AsyncListener listener : asyncContext.getListeners()) {
+      listener.onTimeout(new AsyncEvent(asyncContext));
+    }
+    MockHttpServletResponse response = mvc.perform(asyncDispatch(mvcResult))
+        .andReturn().getResponse();
+
+    assertEquals(HttpStatus.OK.value(), response.getStatus());
+    GetRestaurantsResponse getRestaurantsResponse = objectMapper.readValue(
+        response.getContentAsString(), GetRestaurantsResponse.class);
+    assertEquals(0, getRestaurantsResponse.getRestaurants().size());
+    assertTrue(getRestaurantsResponse.getPartial());
+  }
+
+  @Test
+  public void restaurantsAreStreamedAsNdjsonWhenAccepted() throws Exception {
+    List<Restaurant> restaurants = loadSampleResponseList().getRestaurants();
+    doAnswer(invocation -> {
+      Consumer<List<Restaurant>> batchConsumer = invocation.getArgument(2);
+      // One batch per restaurant, like tiers each finding one.
+      restaurants.forEach(restaurant ->
+          batchConsumer.accept(Collections.singletonList(restaurant)));
+      return null;
+    }).when(restaurantService)
+        .streamRestaurants(any(GetRestaurantsRequest.class), any(LocalTime.class), any());
+
+    URI uri = UriComponentsBuilder
+        .fromPath(RESTAURANT_API_URI)
+        .queryParam("latitude", "20.21")
+        .queryParam("longitude", "30.31")
+        .queryParam("searchFor", "Briyani")
+        .build().toUri();
+
+    MvcResult mvcResult = mvc.perform(
+        get(uri.toString()).accept(APPLICATION_NDJSON_VALUE)
+    ).andReturn();
+    MockHttpServletResponse response = mvc.perform(asyncDispatch(mvcResult))
+        .andReturn().getResponse();
+
+    assertEquals(HttpStatus.OK.value(), response.getStatus());
+    assertEquals(APPLICATION_NDJSON_VALUE, response.getContentType());
+    String[] lines = response.getContentAsString().split("\n");
+    assertEquals(restaurants.size(), lines.length);
+    for (int i = 0; i < lines.length; i++) {
+      assertEquals(restaurants.get(i).getRestaurantId(),
+          objectMapper.readValue(lines[i], Restaurant.class).getRestaurantId());
+    }
+  }
+
   @Test
   public void invalidLatitudeResultsInBadHttpRequest() throws Exception {
     URI uri = UriComponentsBuilder
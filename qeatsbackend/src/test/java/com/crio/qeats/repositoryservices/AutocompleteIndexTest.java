@@ -0,0 +1,80 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.repositoryservices;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.crio.qeats.dto.Suggestion;
+import com.crio.qeats.models.MenuEntity;
+import com.crio.qeats.models.RestaurantEntity;
+import com.crio.qeats.utils.FixtureHelpers;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class AutocompleteIndexTest {
+
+  private static final String FIXTURES = "fixtures/exchanges";
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+  private AutocompleteIndex autocompleteIndex;
+
+  @BeforeEach
+  void setup() throws IOException {
+    List<RestaurantEntity> restaurantEntities = objectMapper.readValue(
+        FixtureHelpers.fixture(FIXTURES + "/initial_data_set_restaurants.json"),
+        new TypeReference<List<RestaurantEntity>>() {});
+    List<MenuEntity> menuEntities = objectMapper.readValue(
+        FixtureHelpers.fixture(FIXTURES + "/initial_data_set_menus.json"),
+        new TypeReference<List<MenuEntity>>() {});
+    HotKeyTracker hotKeyTracker = mock(HotKeyTracker.class);
+    when(hotKeyTracker.getSearchCounts(anyInt()))
+        .thenReturn(Collections.singletonMap("mutton briyani", 5.0));
+
+    autocompleteIndex = new AutocompleteIndex();
+    ReflectionTestUtils.setField(autocompleteIndex, "hotKeyTracker", hotKeyTracker);
+    ReflectionTestUtils.setField(autocompleteIndex, "maxSuggestions", 20);
+    autocompleteIndex.onCatalogLoaded(restaurantEntities, menuEntities);
+  }
+
+  @Test
+  void suggestsEveryKindOnceMostPopularFirst() {
+    assertEquals(Arrays.asList(new Suggestion("A2B", Suggestion.Type.RESTAURANT),
+        new Suggestion("A2B Adyar Ananda Bhavan", Suggestion.Type.RESTAURANT)),
+        autocompleteIndex.suggest("a2", null, null, 10));
+    assertEquals(Arrays.asList(new Suggestion("South Indian", Suggestion.Type.CUISINE)),
+        autocompleteIndex.suggest("IND", null, null, 10));
+    // Searched for more often than the others.
+    assertEquals(new Suggestion("Mutton Briyani", Suggestion.Type.DISH),
+        autocompleteIndex.suggest("briy", null, null, 10).get(0));
+    assertEquals(3, autocompleteIndex.suggest("briy", null, null, 10).size());
+    assertEquals(1, autocompleteIndex.suggest("briy", null, null, 1).size());
+  }
+
+  @Test
+  void scopedSuggestionsOnlyComeFromNearbyRegions() {
+    // Restaurant 13, serving mutton briyani, is about 90km away.
+    assertEquals(Arrays.asList(new Suggestion("Chicken Briyani", Suggestion.Type.DISH),
+        new Suggestion("Fish Briyani", Suggestion.Type.DISH)),
+        autocompleteIndex.suggest("briy", 20.0, 30.0, 10));
+    assertEquals(Arrays.asList(new Suggestion("Mutton Briyani", Suggestion.Type.DISH)),
+        autocompleteIndex.suggest("briy", 20.8, 30.1, 10));
+    assertTrue(autocompleteIndex.suggest("briy", -20.0, -30.0, 10).isEmpty());
+    assertTrue(autocompleteIndex.suggest("dosa", 20.0, 30.0, 10).isEmpty());
+  }
+
+}
@@ -0,0 +1,140 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.repositoryservices;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.crio.qeats.models.RestaurantEntity;
+import com.crio.qeats.utils.FixtureHelpers;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class CacheEntrySerializerTest {
+
+  private static final String FIXTURES = "fixtures/exchanges";
+  private static final TypeReference<List<RestaurantEntity>> CELL_TYPE =
+      new TypeReference<List<RestaurantEntity>>() {};
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+  private List<RestaurantEntity> restaurantEntities;
+
+  @BeforeEach
+  void setup() throws IOException {
+    restaurantEntities = objectMapper.readValue(
+        FixtureHelpers.fixture(FIXTURES + "/initial_data_set_restaurants.json"), CELL_TYPE);
+  }
+
+  @Test
+  void restaurantsSurviveARoundTripInEveryCodec() throws IOException {
+    for (String codecName : Arrays.asList("json", "smile")) {
+      for (int compressAboveBytes : new int[] {0, 64}) {
+        CacheEntrySerializer serializer = serializer(codecName, compressAboveBytes);
+
+        for (long refreshAtMillis : new long[] {0, 1546300800000L}) {
+          CacheEntry<List<RestaurantEntity>> cacheEntry = serializer.deserialize(
+              serializer.serialize(restaurantEntities, refreshAtMillis), CELL_TYPE);
+
+          assertEquals(restaurantEntities, cacheEntry.getValue());
+          assertEquals(refreshAtMillis, cacheEntry.getRefreshAtMillis());
+        }
+      }
+    }
+  }
+
+  @Test
+  void entriesAreStaleOnceTheirRefreshTimeHasPassed() {
+    assertFalse(new CacheEntry<>(restaurantEntities, 0).isStale(Long.MAX_VALUE));
+    assertFalse(new CacheEntry<>(restaurantEntities, 1000).isStale(999));
+    assertTrue(new CacheEntry<>(restaurantEntities, 1000).isStale(1000));
+  }
+
+  @Test
+  void smileEntriesAreSmallerAndCompressionShrinksThemFurther() throws IOException {
+    List<RestaurantEntity> manyRestaurants = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      manyRestaurants.addAll(restaurantEntities);
+    }
+
+    int json = serializer("json", 0).serialize(manyRestaurants, 0).length;
+    int smile = serializer("smile", 0).serialize(manyRestaurants, 0).length;
+    int compressed = serializer("smile", 1024).serialize(manyRestaurants, 0).length;
+
+    assertTrue(smile < json);
+    assertTrue(compressed < smile);
+  }
+
+  @Test
+  void entriesWrittenWithAnotherCodecStayReadable() throws IOException {
+    byte[] jsonEntry = serializer("json", 64).serialize(restaurantEntities, 0);
+
+    assertEquals(restaurantEntities,
+        serializer("smile", 64).deserialize(jsonEntry, CELL_TYPE).getValue());
+  }
+
+  @Test
+  void untaggedEntriesReadAsMisses() throws IOException {
+    byte[] legacyEntry = objectMapper.writeValueAsString(restaurantEntities)
+        .getBytes(StandardCharsets.UTF_8);
+
+    assertNull(serializer("smile", 0).deserialize(legacyEntry, CELL_TYPE));
+  }
+
+  @Test
+  void truncatedEntriesFailToRead() throws IOException {
+    for (String codecName : Arrays.asList("json", "smile")) {
+      for (int compressAboveBytes : new int[] {0, 64}) {
+        CacheEntrySerializer serializer = serializer(codecName, compressAboveBytes);
+        byte[] entry = serializer.serialize(restaurantEntities, 1546300800000L);
+
+        for (int length : new int[] {5, entry.length / 2, entry.length - 1}) {
+          byte[] truncatedEntry = Arrays.copyOf(entry, length);
+          assertThrows(IOException.class,
+              () -> serializer.deserialize(truncatedEntry, CELL_TYPE));
+        }
+      }
+    }
+  }
+
+  @Test
+  void compressedEntriesCannotClaimMoreThanLz4CanExpand() throws IOException {
+    CacheEntrySerializer serializer = serializer("smile", 64);
+    byte[] entry = serializer.serialize(restaurantEntities, 0);
+    // The original length follows the 2 header bytes.
+    int compressedLength = entry.length - 6;
+
+    for (int forgedLength : new int[] {Integer.MAX_VALUE, compressedLength * 255 + 1}) {
+      ByteBuffer.wrap(entry).putInt(2, forgedLength);
+      assertThrows(IOException.class, () -> serializer.deserialize(entry, CELL_TYPE));
+    }
+  }
+
+  private CacheEntrySerializer serializer(String codecName, int compressAboveBytes) {
+    JsonCacheCodec jsonCacheCodec = new JsonCacheCodec();
+    ReflectionTestUtils.setField(jsonCacheCodec, "objectMapper", objectMapper);
+    CacheEntrySerializer serializer = new CacheEntrySerializer();
+    ReflectionTestUtils.setField(serializer, "cacheCodecs",
+        Arrays.asList(jsonCacheCodec, new SmileCacheCodec()));
+    ReflectionTestUtils.setField(serializer, "codecName", codecName);
+    ReflectionTestUtils.setField(serializer, "compressAboveBytes", compressAboveBytes);
+    serializer.initCodecs();
+    return serializer;
+  }
+
+}
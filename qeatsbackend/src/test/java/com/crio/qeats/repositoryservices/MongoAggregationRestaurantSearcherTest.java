@@ -0,0 +1,72 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.repositoryservices;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.crio.qeats.models.RestaurantEntity;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.config.AutowireCapableBeanFactory;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+@ExtendWith(MockitoExtension.class)
+class MongoAggregationRestaurantSearcherTest {
+
+  @Mock
+  private MongoTemplate mongoTemplate;
+
+  @Mock
+  private AutowireCapableBeanFactory beanFactory;
+
+  @InjectMocks
+  private MongoAggregationRestaurantSearcher mongoAggregationRestaurantSearcher;
+
+  @Test
+  void serversTooOldForTheAggregationsAreSearchedWithRegexQueries() {
+    MongoRestaurantSearcher mongoRestaurantSearcher = mock(MongoRestaurantSearcher.class);
+    List<RestaurantEntity> restaurantEntities = new ArrayList<>();
+    when(mongoTemplate.executeCommand(any(Document.class))).thenReturn(new Document("version",
+        "3.2.22").append("versionArray", Arrays.asList(3, 2, 22, 0)));
+    when(beanFactory.createBean(MongoRestaurantSearcher.class))
+        .thenReturn(mongoRestaurantSearcher);
+    when(mongoRestaurantSearcher.findRestaurantEntitiesByName("a2b"))
+        .thenReturn(restaurantEntities);
+
+    mongoAggregationRestaurantSearcher.checkServerVersion();
+
+    assertFalse(mongoAggregationRestaurantSearcher.searchesAllTiersAtOnce());
+    assertSame(restaurantEntities,
+        mongoAggregationRestaurantSearcher.findRestaurantEntitiesByName("a2b"));
+  }
+
+  @Test
+  void recentServersAreSearchedWithAggregations() {
+    when(mongoTemplate.executeCommand(any(Document.class))).thenReturn(new Document("version",
+        "3.4.0").append("versionArray", Arrays.asList(3, 4, 0, 0)));
+
+    mongoAggregationRestaurantSearcher.checkServerVersion();
+
+    assertTrue(mongoAggregationRestaurantSearcher.searchesAllTiersAtOnce());
+    verify(beanFactory, never()).createBean(MongoRestaurantSearcher.class);
+  }
+
+}
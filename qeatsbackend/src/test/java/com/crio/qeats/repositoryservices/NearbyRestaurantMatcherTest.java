@@ -0,0 +1,107 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.repositoryservices;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+import com.crio.qeats.models.MenuEntity;
+import com.crio.qeats.models.RestaurantEntity;
+import com.crio.qeats.repositories.MenuRepository;
+import com.crio.qeats.repositoryservices.RestaurantSearchCache.SearchTier;
+import com.crio.qeats.utils.FixtureHelpers;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class NearbyRestaurantMatcherTest {
+
+  private static final String FIXTURES = "fixtures/exchanges";
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+  private List<RestaurantEntity> restaurantEntities;
+  private MenuRepository menuRepository;
+  private NearbyRestaurantMatcher nearbyRestaurantMatcher;
+
+  @BeforeEach
+  void setup() throws IOException {
+    restaurantEntities = objectMapper.readValue(
+        FixtureHelpers.fixture(FIXTURES + "/initial_data_set_restaurants.json"),
+        new TypeReference<List<RestaurantEntity>>() {});
+    List<MenuEntity> menuEntities = objectMapper.readValue(
+        FixtureHelpers.fixture(FIXTURES + "/initial_data_set_menus.json"),
+        new TypeReference<List<MenuEntity>>() {});
+    // Like a query which ignored the restaurant ids, the matcher has to check them itself.
+    menuRepository = mock(MenuRepository.class);
+    when(menuRepository.findMenusByRestaurantIdInAndItemsMatching(any(), anyString()))
+        .thenReturn(menuEntities);
+
+    nearbyRestaurantMatcher = new NearbyRestaurantMatcher();
+    ReflectionTestUtils.setField(nearbyRestaurantMatcher, "menuRepository", menuRepository);
+  }
+
+  @Test
+  void onlyCandidatesMatchExactNamesFirst() {
+    Map<SearchTier, List<RestaurantEntity>> matches = nearbyRestaurantMatcher.findMatches(
+        "a2b adyar ananda bhavan", candidates("14", "11"));
+    assertEquals(Arrays.asList("14"), restaurantIds(matches.get(SearchTier.NAME)));
+
+    matches = nearbyRestaurantMatcher.findMatches("a2b", candidates("14", "13", "11"));
+    assertEquals(Arrays.asList("11", "13", "14"), restaurantIds(matches.get(SearchTier.NAME)));
+    assertTrue(matches.get(SearchTier.ATTRIBUTES).isEmpty());
+  }
+
+  @Test
+  void menusOfOtherRestaurantsAreIgnored() {
+    Map<SearchTier, List<RestaurantEntity>> matches = nearbyRestaurantMatcher.findMatches(
+        "fish briyani", candidates("12", "13"));
+    assertEquals(Arrays.asList("12"), restaurantIds(matches.get(SearchTier.ITEM_NAME)));
+
+    matches = nearbyRestaurantMatcher.findMatches("briyani", candidates("13", "14"));
+    assertEquals(Arrays.asList("13"), restaurantIds(matches.get(SearchTier.ITEM_NAME)));
+
+    matches = nearbyRestaurantMatcher.findMatches("mughal", candidates("10", "11", "12"));
+    assertEquals(Arrays.asList("11", "12"),
+        restaurantIds(matches.get(SearchTier.ITEM_ATTRIBUTES)));
+  }
+
+  @Test
+  void noCandidatesQueriesNothing() {
+    Map<SearchTier, List<RestaurantEntity>> matches = nearbyRestaurantMatcher.findMatches(
+        "briyani", Collections.emptyList());
+    assertEquals(SearchTier.values().length, matches.size());
+    assertTrue(matches.values().stream().allMatch(List::isEmpty));
+    verifyZeroInteractions(menuRepository);
+  }
+
+  private List<RestaurantEntity> candidates(String... restaurantIds) {
+    List<String> wanted = Arrays.asList(restaurantIds);
+    return restaurantEntities.stream()
+        .filter(entity -> wanted.contains(entity.getRestaurantId()))
+        .collect(Collectors.toList());
+  }
+
+  private List<String> restaurantIds(List<RestaurantEntity> restaurantEntities) {
+    return restaurantEntities.stream()
+        .map(RestaurantEntity::getRestaurantId)
+        .collect(Collectors.toList());
+  }
+
+}
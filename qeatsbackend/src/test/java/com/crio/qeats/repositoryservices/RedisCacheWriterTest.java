@@ -0,0 +1,145 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.repositoryservices;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import com.crio.qeats.configs.RedisCircuitBreaker;
+import com.crio.qeats.configs.RedisConfiguration;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import redis.clients.jedis.Jedis;
+import redis.embedded.RedisServer;
+
+class RedisCacheWriterTest {
+
+  private static final int REDIS_PORT = 6393;
+  private static final TypeReference<List<String>> IDS_TYPE =
+      new TypeReference<List<String>>() {};
+
+  private RedisServer redisServer;
+  private SimpleMeterRegistry meterRegistry;
+  private RedisConfiguration redisConfiguration;
+  private CacheEntrySerializer cacheEntrySerializer;
+  private RedisCacheWriter redisCacheWriter;
+
+  @BeforeEach
+  void setup() throws Exception {
+    redisServer = new RedisServer(REDIS_PORT);
+    redisServer.start();
+    meterRegistry = new SimpleMeterRegistry();
+
+    RedisCircuitBreaker redisCircuitBreaker = new RedisCircuitBreaker();
+    ReflectionTestUtils.setField(redisCircuitBreaker, "failureThreshold", 3);
+    ReflectionTestUtils.setField(redisCircuitBreaker, "openInMillis", 1000L);
+    ReflectionTestUtils.setField(redisCircuitBreaker, "meterRegistry", meterRegistry);
+    redisCircuitBreaker.registerMetrics();
+
+    redisConfiguration = new RedisConfiguration();
+    ReflectionTestUtils.setField(redisConfiguration, "redisHost", "localhost");
+    ReflectionTestUtils.setField(redisConfiguration, "poolMaxTotal", 2);
+    ReflectionTestUtils.setField(redisConfiguration, "poolMaxIdle", 2);
+    ReflectionTestUtils.setField(redisConfiguration, "poolMaxWaitInMillis", 200L);
+    ReflectionTestUtils.setField(redisConfiguration, "connectTimeoutInMillis", 1000);
+    ReflectionTestUtils.setField(redisConfiguration, "socketTimeoutInMillis", 1000);
+    ReflectionTestUtils.setField(redisConfiguration, "meterRegistry", meterRegistry);
+    ReflectionTestUtils.setField(redisConfiguration, "redisCircuitBreaker", redisCircuitBreaker);
+    redisConfiguration.setRedisPort(REDIS_PORT);
+    redisConfiguration.initCache();
+
+    JsonCacheCodec jsonCacheCodec = new JsonCacheCodec();
+    ReflectionTestUtils.setField(jsonCacheCodec, "objectMapper", new ObjectMapper());
+    cacheEntrySerializer = new CacheEntrySerializer();
+    ReflectionTestUtils.setField(cacheEntrySerializer, "cacheCodecs",
+        Arrays.asList(jsonCacheCodec, new SmileCacheCodec()));
+    ReflectionTestUtils.setField(cacheEntrySerializer, "codecName", "smile");
+    ReflectionTestUtils.setField(cacheEntrySerializer, "compressAboveBytes", 1024);
+    cacheEntrySerializer.initCodecs();
+
+    redisCacheWriter = writer(redisConfiguration, 10);
+  }
+
+  @AfterEach
+  void teardown() throws InterruptedException {
+    redisCacheWriter.stop();
+    redisConfiguration.closePool();
+    redisServer.stop();
+  }
+
+  @Test
+  void writesFillsAndTheirFollowUpCommands() throws Exception {
+    try (Jedis jedis = redisConfiguration.getJedisPool().getResource()) {
+      jedis.set("lock:search:a", "token");
+    }
+
+    assertTrue(redisCacheWriter.submit(
+        Collections.singletonMap("search:a", Arrays.asList("11", "12")), 60, 0,
+        pipeline -> pipeline.del("lock:search:a")));
+    assertTrue(redisCacheWriter.awaitWrites(1000));
+
+    try (Jedis jedis = redisConfiguration.getJedisPool().getResource()) {
+      CacheEntry<List<String>> cacheEntry =
+          cacheEntrySerializer.deserialize(jedis.get("search:a".getBytes()), IDS_TYPE);
+      assertEquals(Arrays.asList("11", "12"), cacheEntry.getValue());
+      assertTrue(jedis.ttl("search:a") > 0);
+      assertNull(jedis.get("lock:search:a"));
+    }
+  }
+
+  @Test
+  void dropsFillsInsteadOfBlockingWhenTheQueueIsFull() throws Exception {
+    redisCacheWriter.stop();
+    CountDownLatch writing = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    RedisConfiguration slowRedis = mock(RedisConfiguration.class);
+    when(slowRedis.isCacheAvailable()).thenAnswer(invocation -> {
+      writing.countDown();
+      release.await();
+      return false;
+    });
+    redisCacheWriter = writer(slowRedis, 1);
+
+    assertTrue(redisCacheWriter.submit(Collections.singletonMap("search:a", "a"), 60));
+    writing.await();
+    assertTrue(redisCacheWriter.submit(Collections.singletonMap("search:b", "b"), 60));
+    assertFalse(redisCacheWriter.submit(Collections.singletonMap("search:c", "c"), 60));
+    assertEquals(1.0, meterRegistry.get("qeats.cache.write.dropped").counter().count());
+
+    release.countDown();
+    assertTrue(redisCacheWriter.awaitWrites(1000));
+  }
+
+  private RedisCacheWriter writer(RedisConfiguration redisConfiguration, int queueCapacity) {
+    RedisCacheWriter writer = new RedisCacheWriter();
+    ReflectionTestUtils.setField(writer, "redisConfiguration", redisConfiguration);
+    ReflectionTestUtils.setField(writer, "redisCircuitBreaker",
+        ReflectionTestUtils.getField(this.redisConfiguration, "redisCircuitBreaker"));
+    ReflectionTestUtils.setField(writer, "cacheEntrySerializer", cacheEntrySerializer);
+    ReflectionTestUtils.setField(writer, "redisCacheInvalidationBus",
+        mock(RedisCacheInvalidationBus.class));
+    ReflectionTestUtils.setField(writer, "meterRegistry", meterRegistry);
+    ReflectionTestUtils.setField(writer, "queueCapacity", queueCapacity);
+    ReflectionTestUtils.setField(writer, "batchSize", 8);
+    writer.start();
+    return writer;
+  }
+
+}
@@ -0,0 +1,82 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.repositoryservices;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.crio.qeats.models.MenuEntity;
+import com.crio.qeats.models.RestaurantEntity;
+import com.crio.qeats.repositories.MenuRepository;
+import com.crio.qeats.repositories.RestaurantRepository;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+@ExtendWith(MockitoExtension.class)
+class RestaurantCatalogTest {
+
+  @Mock
+  private RestaurantRepository restaurantRepository;
+
+  @Mock
+  private MenuRepository menuRepository;
+
+  @InjectMocks
+  private RestaurantCatalog restaurantCatalog;
+
+  private final RestaurantCatalog.Listener first = mock(RestaurantCatalog.Listener.class);
+  private final RestaurantCatalog.Listener second = mock(RestaurantCatalog.Listener.class);
+
+  @BeforeEach
+  void setup() {
+    ReflectionTestUtils.setField(restaurantCatalog, "listeners", Arrays.asList(first, second));
+  }
+
+  @Test
+  void everyListenerBuildsFromTheSameLoad() {
+    List<RestaurantEntity> restaurantEntities = Collections.singletonList(new RestaurantEntity());
+    List<MenuEntity> menuEntities = Collections.singletonList(new MenuEntity());
+    when(restaurantRepository.findAll()).thenReturn(restaurantEntities);
+    when(menuRepository.findAll()).thenReturn(menuEntities);
+    doThrow(new IllegalStateException("bad catalog")).when(first)
+        .onCatalogLoaded(anyList(), anyList());
+
+    restaurantCatalog.load();
+
+    verify(restaurantRepository, times(1)).findAll();
+    verify(menuRepository, times(1)).findAll();
+    verify(first).onCatalogLoaded(restaurantEntities, menuEntities);
+    // Not kept from its own index by the failure of another.
+    verify(second).onCatalogLoaded(restaurantEntities, menuEntities);
+  }
+
+  @Test
+  void listenersKeepTheirIndexWhenLoadingFails() {
+    when(restaurantRepository.findAll())
+        .thenThrow(new IllegalStateException("database unavailable"));
+
+    restaurantCatalog.load();
+
+    verify(first, never()).onCatalogLoaded(any(), any());
+    verify(second, never()).onCatalogLoaded(any(), any());
+  }
+
+}
@@ -0,0 +1,170 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.repositoryservices;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.crio.qeats.models.RestaurantEntity;
+import com.crio.qeats.repositories.RestaurantRepository;
+import com.crio.qeats.utils.FixtureHelpers;
+import com.crio.qeats.utils.GeoUtils;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+@ExtendWith(MockitoExtension.class)
+class RestaurantGeoIndexTest {
+
+  private static final String FIXTURES = "fixtures/exchanges";
+
+  @Mock
+  private RestaurantRepository restaurantRepository;
+
+  @InjectMocks
+  private RestaurantGeoIndex restaurantGeoIndex;
+
+  private List<RestaurantEntity> allRestaurants;
+
+  @BeforeEach
+  void setup() throws IOException {
+    allRestaurants = listOfRestaurants();
+  }
+
+  @Test
+  void closeByRestaurantsAreReturnedInCatalogOrder() {
+    when(restaurantRepository.findAll()).thenReturn(allRestaurants);
+    restaurantGeoIndex.rebuild();
+
+    List<RestaurantEntity> closeBy = restaurantGeoIndex
+        .findRestaurantEntitiesCloseBy(20.0, 30.0, 3.0);
+
+    assertEquals(5, restaurantGeoIndex.size());
+    assertEquals(2, closeBy.size());
+    assertEquals("11", closeBy.get(0).getRestaurantId());
+    assertEquals("12", closeBy.get(1).getRestaurantId());
+  }
+
+  @Test
+  void lookupsBuildTheIndexFirstAndFailIfTheyCannot() {
+    ReflectionTestUtils.setField(restaurantGeoIndex, "buildRetryInMs", 60000L);
+    when(restaurantRepository.findAll())
+        .thenThrow(new IllegalStateException("database unavailable"))
+        .thenReturn(allRestaurants);
+
+    // Not answered from the empty index, which would get cached as empty cells.
+    assertThrows(IllegalStateException.class,
+        () -> restaurantGeoIndex.findRestaurantEntitiesInCells(Arrays.asList("s0")));
+    // Nor retried by every lookup while the database is unavailable.
+    assertThrows(IllegalStateException.class,
+        () -> restaurantGeoIndex.findRestaurantEntitiesCloseBy(20.0, 30.0, 3.0));
+    verify(restaurantRepository, times(1)).findAll();
+
+    ReflectionTestUtils.setField(restaurantGeoIndex, "buildRetryInMs", 0L);
+    List<RestaurantEntity> closeBy = restaurantGeoIndex
+        .findRestaurantEntitiesCloseBy(20.0, 30.0, 3.0);
+    assertEquals(5, restaurantGeoIndex.size());
+    assertEquals(2, closeBy.size());
+  }
+
+  @Test
+  void catalogLoadsReplaceTheIndexWithoutReadingTheDatabase() {
+    restaurantGeoIndex.onCatalogLoaded(allRestaurants, Collections.emptyList());
+
+    assertEquals(2, restaurantGeoIndex.findRestaurantEntitiesCloseBy(20.0, 30.0, 3.0).size());
+    verify(restaurantRepository, never()).findAll();
+  }
+
+  @Test
+  void changesSinceTheLastBuildSurviveTheNextOne() throws IOException {
+    restaurantGeoIndex.onCatalogLoaded(allRestaurants, Collections.emptyList());
+    // Read before the changes below, as by a catalog load running concurrently.
+    List<RestaurantEntity> staleRestaurants = listOfRestaurants();
+    RestaurantEntity added = new RestaurantEntity();
+    added.setId("99");
+    added.setRestaurantId("99");
+    added.setLatitude(20.001);
+    added.setLongitude(30.001);
+    restaurantGeoIndex.upsert(added);
+    restaurantGeoIndex.remove("11");
+
+    restaurantGeoIndex.onCatalogLoaded(staleRestaurants, Collections.emptyList());
+
+    List<String> closeByIds = restaurantGeoIndex.findRestaurantEntitiesCloseBy(20.0, 30.0, 3.0)
+        .stream().map(RestaurantEntity::getRestaurantId).collect(Collectors.toList());
+    assertEquals(Arrays.asList("12", "99"), closeByIds);
+  }
+
+  @Test
+  void upsertMovesAndRemoveDropsRestaurant() {
+    when(restaurantRepository.findAll()).thenReturn(allRestaurants);
+    restaurantGeoIndex.rebuild();
+
+    RestaurantEntity moved = allRestaurants.get(3);
+    moved.setLatitude(20.001);
+    moved.setLongitude(30.001);
+    restaurantGeoIndex.upsert(moved);
+    restaurantGeoIndex.remove("11");
+
+    List<String> closeByIds = restaurantGeoIndex.findRestaurantEntitiesCloseBy(20.0, 30.0, 3.0)
+        .stream().map(RestaurantEntity::getRestaurantId).collect(Collectors.toList());
+
+    assertEquals(4, restaurantGeoIndex.size());
+    assertEquals(Arrays.asList("12", "13"), closeByIds);
+  }
+
+  @Test
+  void matchesBruteForceScan() {
+    Random random = new Random(42);
+    List<RestaurantEntity> restaurants = new ArrayList<>();
+    for (int i = 0; i < 2000; i++) {
+      RestaurantEntity entity = new RestaurantEntity();
+      entity.setId(String.valueOf(i));
+      entity.setRestaurantId(String.valueOf(i));
+      entity.setLatitude(12.9 + random.nextDouble() * 0.3);
+      entity.setLongitude(77.5 + random.nextDouble() * 0.3);
+      restaurants.add(entity);
+    }
+    when(restaurantRepository.findAll()).thenReturn(restaurants);
+    restaurantGeoIndex.rebuild();
+
+    for (double radius : new double[] {3.0, 5.0}) {
+      List<RestaurantEntity> expected = restaurants.stream()
+          .filter(r -> GeoUtils.findDistanceInKm(13.05, 77.65, r.getLatitude(),
+              r.getLongitude()) < radius)
+          .collect(Collectors.toList());
+
+      assertEquals(expected,
+          restaurantGeoIndex.findRestaurantEntitiesCloseBy(13.05, 77.65, radius));
+    }
+  }
+
+  private List<RestaurantEntity> listOfRestaurants() throws IOException {
+    return new ObjectMapper().readValue(
+        FixtureHelpers.fixture(FIXTURES + "/initial_data_set_restaurants.json"),
+        new TypeReference<List<RestaurantEntity>>() {
+        });
+  }
+
+}
@@ -2,6 +2,7 @@ package com.crio.qeats.repositoryservices;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -17,6 +18,7 @@ import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import java.io.IOException;
 import java.time.LocalTime;
+import java.util.Arrays;
 import java.util.List;
 import javax.inject.Provider;
 import org.junit.jupiter.api.AfterAll;
@@ -32,6 +34,7 @@ import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.ActiveProfiles;
 import redis.clients.jedis.Jedis;
+import redis.clients.util.SafeEncoder;
 import redis.embedded.RedisServer;
 
 @SpringBootTest(classes = { QEatsApplication.class })
@@ -48,9 +51,17 @@ class RestaurantRepositoryServiceCacheTest {
   @Autowired
   private RedisConfiguration redisConfiguration;
   @Autowired
+  private RedisCacheWriter redisCacheWriter;
+  @Autowired
   private ObjectMapper objectMapper;
   @Autowired
   private Provider<ModelMapper> modelMapperProvider;
+  @Autowired
+  private RestaurantGeoIndex restaurantGeoIndex;
+  @Autowired
+  private RestaurantCellCache restaurantCellCache;
+  @Autowired
+  private CacheEntrySerializer cacheEntrySerializer;
 
   //@Value("${spring.redis.port}")
   //private int redisPort;
@@ -61,17 +72,21 @@ class RestaurantRepositoryServiceCacheTest {
   private RestaurantRepository mockRestaurantRepository;
 
   @AfterEach  
-  void teardown() {
+  void teardown() throws InterruptedException {
+    // Fills still being written would land in the next test's cache.
+    redisCacheWriter.awaitWrites(1000);
     redisConfiguration.destroyCache();
   }
 
 
   @Test
-  void restaurantsCloseByFromWarmCache(@Autowired MongoTemplate mongoTemplate) throws IOException {
+  void restaurantsCloseByFromWarmCache(@Autowired MongoTemplate mongoTemplate)
+      throws IOException, InterruptedException {
     assertNotNull(mongoTemplate);
     assertNotNull(restaurantRepositoryService);
 
     when(mockRestaurantRepository.findAll()).thenReturn(listOfRestaurants());
+    restaurantGeoIndex.rebuild();
 
     Jedis jedis =  redisConfiguration.getJedisPool().getResource();
 
@@ -80,15 +95,38 @@ class RestaurantRepositoryServiceCacheTest {
         .findAllRestaurantsCloseBy(20.0, 30.0, LocalTime.of(18, 1), 3.0);
     allRestaurantsCloseBy = restaurantRepositoryService
         .findAllRestaurantsCloseBy(20.0, 30.0, LocalTime.of(18, 1), 3.0);
-    GeoHash geoHash = GeoHash.withCharacterPrecision(20.0, 30.0, 7);
+    GeoHash geoHash = GeoHash.withCharacterPrecision(20.0, 30.0,
+        RestaurantCellCache.CELL_PRECISION);
 
     verify(mockRestaurantRepository, times(1)).findAll();
-    assertNotNull(jedis.get(geoHash.toBase32()));
+    redisCacheWriter.awaitWrites(1000);
+    assertNotNull(jedis.get(RestaurantCellCache.getCacheKey(geoHash.toBase32())));
     assertEquals(2, allRestaurantsCloseBy.size());
     assertEquals("11", allRestaurantsCloseBy.get(0).getRestaurantId());
     assertEquals("12", allRestaurantsCloseBy.get(1).getRestaurantId());
   }
 
+  @Test
+  void truncatedCellsReadAsMissesAndGetRefilled() throws Exception {
+    when(mockRestaurantRepository.findAll()).thenReturn(listOfRestaurants());
+    // No restaurants there, and not cached locally by the other tests.
+    String geoHash = GeoHash.withCharacterPrecision(0.0, 0.0,
+        RestaurantCellCache.CELL_PRECISION).toBase32();
+    byte[] cacheKey = SafeEncoder.encode(RestaurantCellCache.getCacheKey(geoHash));
+    byte[] entry = cacheEntrySerializer.serialize(listOfRestaurants(), 0);
+
+    try (Jedis jedis = redisConfiguration.getJedisPool().getResource()) {
+      jedis.set(cacheKey, Arrays.copyOf(entry, entry.length / 2));
+
+      assertTrue(restaurantCellCache.getRestaurantEntitiesInCells(Arrays.asList(geoHash))
+          .get(geoHash).isEmpty());
+
+      redisCacheWriter.awaitWrites(1000);
+      assertTrue(cacheEntrySerializer.deserialize(jedis.get(cacheKey),
+          new TypeReference<List<RestaurantEntity>>() {}).getValue().isEmpty());
+    }
+  }
+
   private List<RestaurantEntity> listOfRestaurants() throws IOException {
     String fixture =
         FixtureHelpers.fixture(FIXTURES + "/initial_data_set_restaurants.json");
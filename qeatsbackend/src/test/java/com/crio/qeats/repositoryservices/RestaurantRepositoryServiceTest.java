@@ -11,6 +11,7 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -67,6 +68,8 @@ public class RestaurantRepositoryServiceTest {
 
   @Autowired
   private RedisConfiguration redisConfiguration;
+  @Autowired
+  private RedisCacheWriter redisCacheWriter;
 
   // @Value("${spring.redis.port}")
   // private int redisPort;
@@ -90,7 +93,9 @@ public class RestaurantRepositoryServiceTest {
   }
 
   @AfterEach
-  void teardown() {
+  void teardown() throws InterruptedException {
+    // Fills still being written would land in the next test's cache.
+    redisCacheWriter.awaitWrites(1000);
     mongoTemplate.dropCollection("restaurants");
     redisConfiguration.destroyCache();
   }
@@ -104,7 +109,8 @@ public class RestaurantRepositoryServiceTest {
     List<Restaurant> allRestaurantsCloseBy = restaurantRepositoryService
         .findAllRestaurantsCloseBy(20.0, 30.0, LocalTime.of(18, 1), 3.0);
 
-    verify(restaurantRepository, times(1)).findAll();
+    // Served from the geo index which is kept in sync with the saves above.
+    verify(restaurantRepository, never()).findAll();
     assertEquals(2, allRestaurantsCloseBy.size());
     assertEquals("11", allRestaurantsCloseBy.get(0).getRestaurantId());
     assertEquals("12", allRestaurantsCloseBy.get(1).getRestaurantId());
@@ -0,0 +1,39 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.repositoryservices;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+import com.crio.qeats.repositoryservices.RestaurantSearchCache.SearchTier;
+import org.junit.jupiter.api.Test;
+
+class RestaurantSearchCacheTest {
+
+  @Test
+  void equivalentSearchStringsShareTheirKey() {
+    assertEquals(RestaurantSearchCache.normalize("chicken biryani"),
+        RestaurantSearchCache.normalize("  Chicken \t BIRYANI "));
+  }
+
+  @Test
+  void keysSeparateTiersAndRadiiAndHaveNoSpaces() {
+    String key = RestaurantSearchCache.getCacheKey(SearchTier.NAME, "chicken biryani",
+        "setqkf", 5.0);
+
+    assertEquals("search:name:5.0:setqkf:chicken+biryani", key);
+    assertFalse(key.contains(" "));
+    assertNotEquals(key, RestaurantSearchCache.getCacheKey(SearchTier.ITEM_NAME,
+        "chicken biryani", "setqkf", 5.0));
+    assertNotEquals(key, RestaurantSearchCache.getCacheKey(SearchTier.NAME,
+        "chicken biryani", "setqkf", 3.0));
+    assertNotEquals(RestaurantSearchCache.getCacheKey(SearchTier.NAME, "c++", "setqkf", 5.0),
+        RestaurantSearchCache.getCacheKey(SearchTier.NAME, "c  ", "setqkf", 5.0));
+  }
+
+}
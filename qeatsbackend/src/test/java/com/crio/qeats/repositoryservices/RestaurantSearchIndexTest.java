@@ -0,0 +1,74 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.repositoryservices;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.crio.qeats.models.MenuEntity;
+import com.crio.qeats.models.RestaurantEntity;
+import com.crio.qeats.utils.FixtureHelpers;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class RestaurantSearchIndexTest {
+
+  private static final String FIXTURES = "fixtures/exchanges";
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+  private RestaurantSearchIndex restaurantSearchIndex;
+
+  @BeforeEach
+  void setup() throws IOException {
+    List<RestaurantEntity> restaurantEntities = objectMapper.readValue(
+        FixtureHelpers.fixture(FIXTURES + "/initial_data_set_restaurants.json"),
+        new TypeReference<List<RestaurantEntity>>() {});
+    List<MenuEntity> menuEntities = objectMapper.readValue(
+        FixtureHelpers.fixture(FIXTURES + "/initial_data_set_menus.json"),
+        new TypeReference<List<MenuEntity>>() {});
+
+    restaurantSearchIndex = new RestaurantSearchIndex();
+    restaurantSearchIndex.onCatalogLoaded(restaurantEntities, menuEntities);
+  }
+
+  @Test
+  void exactNameMatchesComeFirst() {
+    assertEquals(Arrays.asList("10", "11", "12", "13", "14"),
+        restaurantIds(restaurantSearchIndex.findRestaurantEntitiesByName("a2b")));
+    assertEquals(Arrays.asList("14"),
+        restaurantIds(restaurantSearchIndex.findRestaurantEntitiesByName("adyar ananda")));
+  }
+
+  @Test
+  void searchesEachTierSeparately() {
+    assertEquals(5, restaurantSearchIndex.findRestaurantEntitiesByAttributes("south").size());
+    assertTrue(restaurantSearchIndex.findRestaurantEntitiesByAttributes("briyani").isEmpty());
+    assertEquals(Arrays.asList("11", "12", "13"),
+        restaurantIds(restaurantSearchIndex.findRestaurantEntitiesByItemName("briyani")));
+    assertEquals(Arrays.asList("11", "12", "13"),
+        restaurantIds(restaurantSearchIndex.findRestaurantEntitiesByItemAttributes("mughal")));
+  }
+
+  @Test
+  void queriesAreMatchedLiterally() {
+    assertEquals(Arrays.asList("12"),
+        restaurantIds(restaurantSearchIndex.findRestaurantEntitiesByItemName("fish briyani")));
+    assertTrue(restaurantSearchIndex.findRestaurantEntitiesByItemName("f.sh").isEmpty());
+  }
+
+  private static List<String> restaurantIds(List<RestaurantEntity> restaurantEntities) {
+    return restaurantEntities.stream().map(RestaurantEntity::getRestaurantId)
+        .collect(Collectors.toList());
+  }
+
+}
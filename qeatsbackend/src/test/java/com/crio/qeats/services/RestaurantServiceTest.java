@@ -9,6 +9,8 @@ package com.crio.qeats.services;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -24,7 +26,10 @@ import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import java.io.IOException;
 import java.time.LocalTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
@@ -173,6 +178,98 @@ class RestaurantServiceTest {
     assertEquals(servingRadiusInKms.getValue().toString(), "3.0");
   }
 
+  @Test
+  void findRestaurantsSearchQueryByPages() throws IOException {
+    when(restaurantRepositoryServiceMock.findRestaurantsByName(any(Double.class),
+        any(Double.class), any(String.class), any(LocalTime.class), any(Double.class)))
+        .thenReturn(loadRestaurantsDuringNormalHours());
+
+    GetRestaurantsRequest getRestaurantsRequest = new GetRestaurantsRequest(20.0, 30.0);
+    getRestaurantsRequest.setSearchFor("Test");
+    getRestaurantsRequest.setLimit(2);
+
+    GetRestaurantsResponse firstPage = restaurantService
+        .findRestaurantsBySearchQuery(getRestaurantsRequest, LocalTime.of(22, 0));
+
+    assertEquals(2, firstPage.getRestaurants().size());
+    assertEquals("10", firstPage.getRestaurants().get(0).getRestaurantId());
+    assertEquals("11", firstPage.getRestaurants().get(1).getRestaurantId());
+    assertEquals("2", firstPage.getNextCursor());
+    // The name matches fill the page, the other tiers could only come after them.
+    verify(restaurantRepositoryServiceMock, times(0))
+        .findRestaurantsByAttributes(any(Double.class), any(Double.class), any(String.class),
+            any(LocalTime.class), any(Double.class));
+
+    getRestaurantsRequest.setCursor(firstPage.getNextCursor());
+    GetRestaurantsResponse secondPage = restaurantService
+        .findRestaurantsBySearchQuery(getRestaurantsRequest, LocalTime.of(22, 0));
+
+    assertEquals(1, secondPage.getRestaurants().size());
+    assertEquals("12", secondPage.getRestaurants().get(0).getRestaurantId());
+    assertNull(secondPage.getNextCursor());
+  }
+
+  @Test
+  void findRestaurantsSearchQueryAsyncCompletesWithTheLastTier() throws IOException {
+    List<Restaurant> restaurants = loadRestaurantsDuringNormalHours();
+    CompletableFuture<List<Restaurant>> itemAttributesTier = new CompletableFuture<>();
+    when(restaurantRepositoryServiceMock.findRestaurantsByNameMt(any(Double.class),
+        any(Double.class), any(String.class), any(LocalTime.class), any(Double.class)))
+        .thenReturn(CompletableFuture.completedFuture(restaurants.subList(1, 2)));
+    when(restaurantRepositoryServiceMock.findRestaurantsByAttributesMt(any(Double.class),
+        any(Double.class), any(String.class), any(LocalTime.class), any(Double.class)))
+        .thenReturn(CompletableFuture.completedFuture(new ArrayList<>()));
+    when(restaurantRepositoryServiceMock.findRestaurantsByItemNameMt(any(Double.class),
+        any(Double.class), any(String.class), any(LocalTime.class), any(Double.class)))
+        .thenReturn(CompletableFuture.completedFuture(restaurants.subList(0, 2)));
+    when(restaurantRepositoryServiceMock.findRestaurantsByItemAttributesMt(any(Double.class),
+        any(Double.class), any(String.class), any(LocalTime.class), any(Double.class)))
+        .thenReturn(itemAttributesTier);
+
+    GetRestaurantsRequest getRestaurantsRequest = new GetRestaurantsRequest(20.0, 30.0);
+    getRestaurantsRequest.setSearchFor("Test");
+    CompletableFuture<GetRestaurantsResponse> response = restaurantService
+        .findRestaurantsBySearchQueryAsync(getRestaurantsRequest, LocalTime.of(22, 0));
+
+    assertFalse(response.isDone());
+    itemAttributesTier.complete(restaurants.subList(2, 3));
+    assertTrue(response.isDone());
+    List<Restaurant> found = response.join().getRestaurants();
+    assertEquals(3, found.size());
+    assertEquals("11", found.get(0).getRestaurantId());
+    assertEquals("10", found.get(1).getRestaurantId());
+    assertEquals("12", found.get(2).getRestaurantId());
+    assertNull(response.join().getPartial());
+  }
+
+  @Test
+  void findRestaurantsSearchQueryAsyncLeavesOutTiersMissingTheDeadline() throws Exception {
+    List<Restaurant> restaurants = loadRestaurantsDuringNormalHours();
+    when(restaurantRepositoryServiceMock.findRestaurantsByNameMt(any(Double.class),
+        any(Double.class), any(String.class), any(LocalTime.class), any(Double.class)))
+        .thenReturn(CompletableFuture.completedFuture(restaurants.subList(0, 1)));
+    when(restaurantRepositoryServiceMock.findRestaurantsByAttributesMt(any(Double.class),
+        any(Double.class), any(String.class), any(LocalTime.class), any(Double.class)))
+        .thenReturn(CompletableFuture.completedFuture(new ArrayList<>()));
+    when(restaurantRepositoryServiceMock.findRestaurantsByItemNameMt(any(Double.class),
+        any(Double.class), any(String.class), any(LocalTime.class), any(Double.class)))
+        .thenReturn(new CompletableFuture<>());
+    when(restaurantRepositoryServiceMock.findRestaurantsByItemAttributesMt(any(Double.class),
+        any(Double.class), any(String.class), any(LocalTime.class), any(Double.class)))
+        .thenReturn(CompletableFuture.completedFuture(restaurants.subList(1, 2)));
+
+    GetRestaurantsRequest getRestaurantsRequest = new GetRestaurantsRequest(20.0, 30.0);
+    getRestaurantsRequest.setSearchFor("Test");
+    GetRestaurantsResponse response = restaurantService
+        .findRestaurantsBySearchQueryAsync(getRestaurantsRequest, LocalTime.of(22, 0))
+        .get(10, TimeUnit.SECONDS);
+
+    assertTrue(response.getPartial());
+    assertEquals(2, response.getRestaurants().size());
+    assertEquals("10", response.getRestaurants().get(0).getRestaurantId());
+    assertEquals("11", response.getRestaurants().get(1).getRestaurantId());
+  }
+
   @Test
   void findRestaurantsSearchQueryIsEmpty() {
     GetRestaurantsRequest getRestaurantsRequest = new GetRestaurantsRequest(20.0, 30.0);
@@ -0,0 +1,68 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class DeadlineTest {
+
+  @Test
+  void remainingTimeRunsOutAtTheDeadline() {
+    Deadline later = Deadline.after(1, TimeUnit.HOURS);
+    assertFalse(later.isExpired());
+    assertTrue(later.getRemaining(TimeUnit.MINUTES) > 58);
+
+    Deadline passed = Deadline.after(-1, TimeUnit.MILLISECONDS);
+    assertTrue(passed.isExpired());
+    assertEquals(0, passed.getRemaining(TimeUnit.NANOSECONDS));
+  }
+
+  @Test
+  void callSetsTheCurrentDeadlineForItsDuration() {
+    Deadline outer = Deadline.after(1, TimeUnit.MINUTES);
+    Deadline inner = Deadline.after(1, TimeUnit.SECONDS);
+
+    assertNull(Deadline.current());
+    outer.call(() -> {
+      assertSame(outer, Deadline.current());
+      assertSame(inner, inner.call(Deadline::current));
+      assertSame(outer, Deadline.current());
+      return null;
+    });
+    assertNull(Deadline.current());
+  }
+
+  @Test
+  void submittedTasksRunWithTheDeadlineCurrentAtSubmission() throws Exception {
+    Deadline deadline = Deadline.after(1, TimeUnit.MINUTES);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      CompletableFuture<Deadline> seen = new CompletableFuture<>();
+      Runnable task = deadline.call(() ->
+          Deadline.propagate(() -> seen.complete(Deadline.current())));
+      executor.execute(task);
+      assertSame(deadline, seen.get(5, TimeUnit.SECONDS));
+
+      CompletableFuture<Deadline> seenAfter = new CompletableFuture<>();
+      executor.execute(() -> seenAfter.complete(Deadline.current()));
+      assertNull(seenAfter.get(5, TimeUnit.SECONDS));
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+}
@@ -0,0 +1,57 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class DecayingTopKTest {
+
+  @Test
+  void hottestKeysComeFirst() {
+    DecayingTopK<String> topK = new DecayingTopK<>(10);
+    for (int i = 0; i < 5; i++) {
+      topK.add("biryani");
+    }
+    topK.add("dosa");
+    topK.add("pizza", 3.0);
+
+    assertEquals(Arrays.asList("biryani", "pizza"), new ArrayList<>(topK.top(2).keySet()));
+    assertEquals(5.0, (double) topK.top(1).get("biryani"));
+  }
+
+  @Test
+  void memoryStaysBoundedAndKeepsTheHotKeys() {
+    DecayingTopK<String> topK = new DecayingTopK<>(10);
+    for (int round = 0; round < 100; round++) {
+      topK.add("hot");
+      topK.add("cold-" + round);
+    }
+
+    assertTrue(topK.size() <= 20);
+    assertEquals("hot", topK.top(1).keySet().iterator().next());
+  }
+
+  @Test
+  void decayForgetsKeysWhichStoppedComing() {
+    DecayingTopK<String> topK = new DecayingTopK<>(10);
+    topK.add("lunch", 8.0);
+    topK.add("once");
+
+    topK.decay(0.5);
+    Map<String, Double> top = topK.top(10);
+
+    assertEquals(1, top.size());
+    assertEquals(4.0, (double) top.get("lunch"));
+  }
+
+}
@@ -0,0 +1,58 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class GeoRadiusFilterTest {
+
+  @Test
+  public void agreesWithFindDistanceInKm() {
+    Random random = new Random(11);
+    double[][] centres = {{12.9168585, 77.6072902}, {20.0, 30.0}, {64.1, -21.9}, {-33.9, 18.4}};
+
+    for (double[] centre : centres) {
+      for (double radius : new double[] {3.0, 5.0}) {
+        GeoRadiusFilter filter = new GeoRadiusFilter(centre[0], centre[1], radius);
+        for (int i = 0; i < 20000; i++) {
+          double latitude = centre[0] + (random.nextDouble() - 0.5) * 0.3;
+          double longitude = centre[1] + (random.nextDouble() - 0.5) * 0.6;
+
+          assertEquals(GeoUtils.findDistanceInKm(centre[0], centre[1], latitude, longitude)
+              < radius, filter.contains(latitude, longitude));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void boundingBoxWrapsAroundTheAntimeridian() {
+    GeoRadiusFilter filter = new GeoRadiusFilter(-17.7, 179.99, 5.0);
+
+    assertTrue(filter.contains(-17.7, -179.99));
+    assertFalse(filter.contains(-17.7, 179.9));
+  }
+
+  @Test
+  public void columnsMatchTheScalarFilter() {
+    double[] latitudes = {20.027, 20.0269, 20.015, 20.8, 20.78};
+    double[] longitudes = {30.0, 30.0, 30.015, 30.1, 30.09};
+    GeoPoints points = new GeoPoints(latitudes, longitudes);
+    GeoRadiusFilter filter = new GeoRadiusFilter(20.0, 30.0, 3.0);
+
+    for (int i = 0; i < points.size(); i++) {
+      assertEquals(filter.contains(latitudes[i], longitudes[i]), points.isWithin(i, filter));
+    }
+    assertFalse(points.isWithin(0, filter));
+    assertTrue(points.isWithin(1, filter));
+  }
+}
@@ -10,7 +10,11 @@
 package com.crio.qeats.utils;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import ch.hsr.geohash.GeoHash;
+import java.util.List;
+import java.util.Random;
 import org.junit.jupiter.api.Test;
 
 class GeoUtilsTest {
@@ -29,4 +33,19 @@ class GeoUtilsTest {
     assertEquals(3.04, distanceBetweenA2bHsrAndA2bBtm, 0.1);
   }
 
+  @Test
+  public void coveringGeoHashesContainEveryPointWithinRadius() {
+    Random random = new Random(7);
+    List<String> geoHashes = GeoUtils.getCoveringGeoHashes(28.49, 77.53, 5.0, 5);
+
+    for (int i = 0; i < 10000; i++) {
+      double latitude = 28.49 + (random.nextDouble() - 0.5) * 0.1;
+      double longitude = 77.53 + (random.nextDouble() - 0.5) * 0.1;
+      if (GeoUtils.findDistanceInKm(28.49, 77.53, latitude, longitude) < 5.0) {
+        assertTrue(geoHashes.contains(
+            GeoHash.geoHashStringWithCharacterPrecision(latitude, longitude, 5)));
+      }
+    }
+  }
+
 }
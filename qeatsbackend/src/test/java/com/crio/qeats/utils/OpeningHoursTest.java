@@ -0,0 +1,67 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalTime;
+import org.junit.jupiter.api.Test;
+
+class OpeningHoursTest {
+
+  @Test
+  public void openStrictlyBetweenOpeningAndClosing() {
+    OpeningHours openingHours = OpeningHours.parse("18:00", "23:00");
+
+    assertFalse(openingHours.isOpenAt(LocalTime.of(17, 59)));
+    assertFalse(openingHours.isOpenAt(LocalTime.of(18, 0)));
+    assertTrue(openingHours.isOpenAt(LocalTime.of(18, 0, 1)));
+    assertTrue(openingHours.isOpenAt(LocalTime.of(18, 1)));
+    assertTrue(openingHours.isOpenAt(LocalTime.of(22, 59, 59)));
+    assertFalse(openingHours.isOpenAt(LocalTime.of(23, 0)));
+    assertFalse(openingHours.isOpenAt(LocalTime.of(23, 1)));
+  }
+
+  @Test
+  public void matchesLocalTimeComparisonForEverySecondOfTheDay() {
+    String[][] hours = {{"18:00", "23:00"}, {"07:03", "15:58"}, {"00:00", "23:59"}};
+    for (String[] openClose : hours) {
+      OpeningHours openingHours = OpeningHours.parse(openClose[0], openClose[1]);
+      LocalTime opensAt = LocalTime.parse(openClose[0]);
+      LocalTime closesAt = LocalTime.parse(openClose[1]);
+
+      for (int second = 0; second < 24 * 60 * 60; second++) {
+        LocalTime time = LocalTime.ofSecondOfDay(second);
+        assertEquals(time.isAfter(opensAt) && time.isBefore(closesAt),
+            openingHours.isOpenAt(time), openClose[0] + "-" + openClose[1] + " at " + time);
+      }
+    }
+  }
+
+  @Test
+  public void closingAfterMidnightWrapsAround() {
+    OpeningHours openingHours = OpeningHours.parse("19:30", "02:00");
+
+    assertFalse(openingHours.isOpenAt(LocalTime.of(19, 30)));
+    assertTrue(openingHours.isOpenAt(LocalTime.of(19, 31)));
+    assertTrue(openingHours.isOpenAt(LocalTime.of(23, 59, 59)));
+    assertTrue(openingHours.isOpenAt(LocalTime.MIDNIGHT));
+    assertTrue(openingHours.isOpenAt(LocalTime.of(1, 59)));
+    assertFalse(openingHours.isOpenAt(LocalTime.of(2, 0)));
+    assertFalse(openingHours.isOpenAt(LocalTime.NOON));
+  }
+
+  @Test
+  public void sameOpeningAndClosingTimeIsNeverOpen() {
+    OpeningHours openingHours = OpeningHours.parse("10:00", "10:00");
+
+    assertFalse(openingHours.isOpenAt(LocalTime.of(10, 0, 1)));
+    assertFalse(openingHours.isOpenAt(LocalTime.of(9, 59)));
+  }
+}
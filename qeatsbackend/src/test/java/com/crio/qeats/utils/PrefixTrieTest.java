@@ -0,0 +1,55 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+
+class PrefixTrieTest {
+
+  private final PrefixTrie<String> prefixTrie = PrefixTrie.<String>builder(3)
+      .add("chicken biryani", "Chicken Biryani", 5)
+      .add("biryani", "Chicken Biryani", 5)
+      .add("chicken tikka", "Chicken Tikka", 2)
+      .add("tikka", "Chicken Tikka", 2)
+      .add("chilli paneer", "Chilli Paneer", 3)
+      .add("paneer", "Chilli Paneer", 3)
+      .add("chai", "Chai", 1)
+      .add("biryani", "Biryani", 4)
+      .build();
+
+  @Test
+  void suggestsBestValuesStartingWithPrefixOnce() {
+    assertEquals(Arrays.asList("Chicken Biryani", "Chilli Paneer", "Chicken Tikka"),
+        prefixTrie.suggest("ch", 10));
+    assertEquals(Arrays.asList("Chicken Biryani", "Chicken Tikka"),
+        prefixTrie.suggest("chicken", 10));
+    assertEquals(Arrays.asList("Chicken Biryani", "Biryani"), prefixTrie.suggest("bir", 10));
+    assertEquals(Arrays.asList("Chai"), prefixTrie.suggest("chai", 10));
+  }
+
+  @Test
+  void prefixesCanEndInsideCompressedLabels() {
+    assertEquals(Arrays.asList("Chilli Paneer"), prefixTrie.suggest("chil", 10));
+    assertEquals(Arrays.asList("Chilli Paneer"), prefixTrie.suggest("chilli pan", 10));
+    assertTrue(prefixTrie.suggest("chilli panner", 10).isEmpty());
+    assertTrue(prefixTrie.suggest("x", 10).isEmpty());
+  }
+
+  @Test
+  void limitsAndScores() {
+    assertEquals(Arrays.asList("Chicken Biryani"), prefixTrie.suggest("c", 1));
+    assertEquals(3, prefixTrie.suggest("", 10).size());
+    assertEquals(5.0, prefixTrie.getScore("Chicken Biryani"));
+    assertEquals(0.0, prefixTrie.getScore("Dosa"));
+    assertTrue(PrefixTrie.<String>builder(3).build().suggest("c", 10).isEmpty());
+  }
+
+}
@@ -0,0 +1,50 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.function.Function;
+import org.junit.jupiter.api.Test;
+
+class RankedMergeTest {
+
+  // Results are "id:source", told apart by id only.
+  private static final Function<String, String> ID = result -> result.split(":")[0];
+
+  @Test
+  void heavierListsComeFirstAndResultsAreKeptOnce() {
+    RankedMerge<String> rankedMerge = new RankedMerge<>(10, ID)
+        .add(Arrays.asList("3:attributes", "1:attributes"), 1)
+        .add(Arrays.asList("2:name", "3:name"), 2);
+    assertEquals(Arrays.asList("2:name", "3:name", "1:attributes"), rankedMerge.getResults());
+  }
+
+  @Test
+  void onlyTheBestAreKept() {
+    RankedMerge<String> rankedMerge = new RankedMerge<>(2, ID)
+        .add(Arrays.asList("1:name"), 3)
+        .add(Arrays.asList("4:item", "5:item", "6:item"), 1)
+        .add(Arrays.asList("2:attributes", "1:attributes"), 2);
+    assertEquals(Arrays.asList("1:name", "2:attributes"), rankedMerge.getResults());
+    assertEquals(2, rankedMerge.size());
+  }
+
+  @Test
+  void completeOnceLighterListsCannotMakeIt() {
+    RankedMerge<String> rankedMerge = new RankedMerge<>(2, ID);
+    assertFalse(rankedMerge.isComplete(2));
+    rankedMerge.add(Arrays.asList("1:name", "2:name"), 3);
+    assertTrue(rankedMerge.isComplete(2));
+    assertFalse(rankedMerge.isComplete(3));
+    assertTrue(new RankedMerge<String>(0, ID).isComplete(1));
+  }
+
+}
@@ -0,0 +1,50 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.utils;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+import org.junit.jupiter.api.Test;
+
+class SubstringIndexTest {
+
+  private final SubstringIndex substringIndex = SubstringIndex.builder()
+      .add(0, "chicken biryani")
+      .add(0, "veg biryani")
+      .add(1, "biryani")
+      .add(2, "butter chicken")
+      .add(3, "idli")
+      .build();
+
+  @Test
+  void findsDocumentsWithAValueContainingTheQuery() {
+    assertArrayEquals(new int[] {0, 1}, substringIndex.findContaining("biryani"));
+    assertArrayEquals(new int[] {0, 2}, substringIndex.findContaining("chicken"));
+    assertArrayEquals(new int[] {0}, substringIndex.findContaining("en bir"));
+  }
+
+  @Test
+  void shortQueriesAreLookedUpDirectly() {
+    assertArrayEquals(new int[] {0, 1}, substringIndex.findContaining("y"));
+    assertArrayEquals(new int[] {3}, substringIndex.findContaining("dl"));
+    assertArrayEquals(new int[] {0, 1, 2, 3}, substringIndex.findContaining(""));
+  }
+
+  @Test
+  void gramsInTheWrongOrderDoNotMatch() {
+    // Every gram of these is indexed, but no value contains them in this order.
+    assertArrayEquals(new int[0], substringIndex.findContaining("biryanix"));
+    assertArrayEquals(new int[0], substringIndex.findContaining("anibir"));
+  }
+
+  @Test
+  void findsExactValues() {
+    assertArrayEquals(new int[] {1}, substringIndex.findEqual("biryani"));
+    assertArrayEquals(new int[0], substringIndex.findEqual("biryan"));
+  }
+
+}
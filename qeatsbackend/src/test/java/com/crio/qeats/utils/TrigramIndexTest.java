@@ -0,0 +1,91 @@
+/*
+ *
+ *  * Copyright (c) Crio.Do 2019. All rights reserved
+ *
+ */
+
+package com.crio.qeats.utils;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class TrigramIndexTest {
+
+  private static final TrigramIndex.Limits NO_LIMITS =
+      new TrigramIndex.Limits(Integer.MAX_VALUE, Integer.MAX_VALUE, Long.MAX_VALUE / 2);
+
+  private final TrigramIndex trigramIndex = TrigramIndex.builder()
+      .add(0, "chicken biryani")
+      .add(0, "tika masala")
+      .add(1, "biryani")
+      .add(2, "paneer tikka")
+      .add(3, "chilli paneer")
+      .add(4, "idli")
+      .build();
+
+  @Test
+  void findsValuesWithTypos() {
+    assertArrayEquals(new int[] {0, 1}, trigramIndex.findSimilar("biriyani", NO_LIMITS));
+    assertArrayEquals(new int[] {2, 3}, trigramIndex.findSimilar("panner", NO_LIMITS));
+    assertArrayEquals(new int[] {0}, trigramIndex.findSimilar("chiken biriyani", NO_LIMITS));
+    // Each word has to be close to a word of the same value.
+    assertArrayEquals(new int[0], trigramIndex.findSimilar("chiken tikka", NO_LIMITS));
+  }
+
+  @Test
+  void closestMatchesComeFirst() {
+    assertArrayEquals(new int[] {2, 0}, trigramIndex.findSimilar("tikka", NO_LIMITS));
+    assertArrayEquals(new int[] {4}, trigramIndex.findSimilar("idly", NO_LIMITS));
+    // Short words tolerate no edits.
+    assertArrayEquals(new int[0], trigramIndex.findSimilar("id", NO_LIMITS));
+    assertArrayEquals(new int[0], trigramIndex.findSimilar("xyz", NO_LIMITS));
+  }
+
+  @Test
+  void stopsOnceLimitsAreUsedUp() {
+    assertArrayEquals(new int[0],
+        trigramIndex.findSimilar("biriyani", new TrigramIndex.Limits(20, 0, Long.MAX_VALUE / 2)));
+    assertArrayEquals(new int[0],
+        trigramIndex.findSimilar("biriyani", new TrigramIndex.Limits(20, 100, 0)));
+    assertArrayEquals(new int[] {2, 3},
+        trigramIndex.findSimilar("panner", new TrigramIndex.Limits(1, 100, Long.MAX_VALUE / 2)));
+  }
+
+  @Test
+  void timeoutBoundsTheWalkOfLargePostings() {
+    // Every word shares the padded gram "  b" with the query.
+    TrigramIndex.Builder builder = TrigramIndex.builder();
+    for (int i = 0; i < 200_000; i++) {
+      StringBuilder word = new StringBuilder("b");
+      for (int n = i, k = 0; k < 5; k++, n /= 26) {
+        word.append((char) ('a' + n % 26));
+      }
+      builder.add(i, word.toString());
+    }
+    TrigramIndex largeIndex = builder.build();
+
+    long startTime = System.nanoTime();
+    assertArrayEquals(new int[0], largeIndex.findSimilar("bx", NO_LIMITS));
+    long unboundedNanos = System.nanoTime() - startTime;
+
+    startTime = System.nanoTime();
+    assertArrayEquals(new int[0],
+        largeIndex.findSimilar("bx", new TrigramIndex.Limits(20, Integer.MAX_VALUE, 1_000)));
+    long boundedNanos = System.nanoTime() - startTime;
+    assertTrue(boundedNanos < unboundedNanos / 4,
+        "bounded " + boundedNanos + "ns, unbounded " + unboundedNanos + "ns");
+  }
+
+  @Test
+  void boundedEditDistance() {
+    assertEquals(1, TrigramIndex.getBoundedEditDistance("biriyani", "biryani", 2));
+    assertEquals(1, TrigramIndex.getBoundedEditDistance("chiken", "chicken", 1));
+    assertEquals(2, TrigramIndex.getBoundedEditDistance("chilly", "chicken", 1));
+    assertEquals(0, TrigramIndex.getBoundedEditDistance("idli", "idli", 0));
+    assertEquals(3, TrigramIndex.getBoundedEditDistance("paneer", "tikka", 2));
+  }
+
+}